@@ -18,32 +18,49 @@ package org.lukhnos.nnio.channels;
 
 import org.lukhnos.nnio.file.OpenOption;
 import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.attribute.FileAttribute;
+import org.lukhnos.nnio.file.impl.ExecutorFileChannel;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 /**
  * Substitute for {@link java.nio.channels.AsynchronousFileChannel}.
  */
 public abstract class AsynchronousFileChannel implements AsynchronousChannel {
+  protected AsynchronousFileChannel() {
+  }
+
+  /**
+   * Opens a file with the options of {@link org.lukhnos.nnio.channels.utils.FileChannelUtils#open}. The operations
+   * run on a bounded pool of daemon threads shared by the channels.
+   */
   public static AsynchronousFileChannel open(Path path, OpenOption... options) throws IOException {
-    throw new UnsupportedOperationException();
+    return open(path, new HashSet<OpenOption>(Arrays.asList(options)), null);
   }
 
-  @Override
-  public void close() throws IOException {
-    throw new UnsupportedOperationException();
+  /**
+   * Opens a file whose operations run on the given executor, or on the shared pool if it is null. The executor
+   * is not shut down when the channel is closed.
+   *
+   * @throws UnsupportedOperationException if file attributes are given.
+   */
+  public static AsynchronousFileChannel open(Path path, Set<? extends OpenOption> options, ExecutorService executor,
+      FileAttribute<?>... attrs) throws IOException {
+    if (attrs.length > 0) {
+      throw new UnsupportedOperationException("FileAttribute not supported");
+    }
+    return ExecutorFileChannel.open(path, options, executor);
   }
 
   public abstract void force(boolean metaData) throws IOException;
 
-  @Override
-  public boolean isOpen() {
-    throw new UnsupportedOperationException();
-  }
-
   public abstract <A> void lock(long position, long size, boolean shared, A attachment, CompletionHandler<FileLock, ?
       super A> handler);
 
@@ -53,6 +70,10 @@ public abstract class AsynchronousFileChannel implements AsynchronousChannel {
 
   public abstract Future<FileLock> lock(long position, long size, boolean shared);
 
+  public final Future<FileLock> lock() {
+    return lock(0L, Long.MAX_VALUE, false);
+  }
+
   public abstract <A> void read(ByteBuffer dst, long position, A attachment, CompletionHandler<Integer, ? super A>
       handler);
 
@@ -64,6 +85,10 @@ public abstract class AsynchronousFileChannel implements AsynchronousChannel {
 
   public abstract FileLock tryLock(long position, long size, boolean shared) throws IOException;
 
+  public final FileLock tryLock() throws IOException {
+    return tryLock(0L, Long.MAX_VALUE, false);
+  }
+
   public abstract <A> void write(ByteBuffer src, long position, A attachment, CompletionHandler<Integer, ? super A>
       handler);
 
@@ -20,4 +20,7 @@ package org.lukhnos.nnio.channels;
  * Substitute for {@link java.nio.channels.CompletionHandler}.
  */
 public interface CompletionHandler<V, A> {
+  void completed(V result, A attachment);
+
+  void failed(Throwable exc, A attachment);
 }
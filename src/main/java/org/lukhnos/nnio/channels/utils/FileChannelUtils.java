@@ -16,40 +16,166 @@
 
 package org.lukhnos.nnio.channels.utils;
 
-import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.AccessDeniedException;
+import org.lukhnos.nnio.file.FileAlreadyExistsException;
+import org.lukhnos.nnio.file.NoSuchFileException;
 import org.lukhnos.nnio.file.OpenOption;
 import org.lukhnos.nnio.file.Path;
 import org.lukhnos.nnio.file.StandardOpenOption;
+import org.lukhnos.nnio.file.impl.OptionFileChannel;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
-import java.util.List;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Utilities for filling in methods missing from {@link java.nio.channels.FileChannel}.
  */
 public class FileChannelUtils {
+  /**
+   * Opens a file with the StandardOpenOption semantics of {@link java.nio.channels.FileChannel#open}.
+   *
+   * SYNC and DSYNC map onto the "rws" and "rwd" modes of RandomAccessFile, so that every write reaches the device
+   * without calling force(). APPEND uses an appending FileOutputStream, made synchronous by forcing after each write.
+   * SPARSE is only a hint and is ignored. Opening for writing without CREATE or CREATE_NEW checks that the file
+   * exists first, as java.io would create it otherwise; no other combination needs a separate check.
+   *
+   * @throws NoSuchFileException if the file, or the directory it is created in, does not exist.
+   * @throws FileAlreadyExistsException if CREATE_NEW is given and the file exists.
+   * @throws IllegalArgumentException if APPEND is combined with READ or TRUNCATE_EXISTING.
+   * @throws UnsupportedOperationException if an option is not a StandardOpenOption.
+   */
   public static FileChannel open(Path path, OpenOption... options) throws IOException {
-    List<OpenOption> optionList = Arrays.asList(options);
-    if (optionList.isEmpty() || (optionList.size() == 1 && optionList.contains(StandardOpenOption.READ))) {
-      RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r");
-      return raf.getChannel();
-    } else if (optionList.contains(StandardOpenOption.WRITE)) {
-      if (Files.notExists(path)) {
-        if (optionList.contains(StandardOpenOption.CREATE)) {
-          Files.createFile(path);
-        } else {
-          throw new FileNotFoundException("file not found: " + path);
+    return open(path, toSet(options));
+  }
+
+  public static FileChannel open(Path path, Set<? extends OpenOption> options) throws IOException {
+    Set<StandardOpenOption> opts = EnumSet.noneOf(StandardOpenOption.class);
+    for (OpenOption option : options) {
+      if (!(option instanceof StandardOpenOption)) {
+        throw new UnsupportedOperationException("unsupported option: " + option);
+      }
+      opts.add((StandardOpenOption) option);
+    }
+
+    boolean append = opts.contains(StandardOpenOption.APPEND);
+    if (append && (opts.contains(StandardOpenOption.READ) || opts.contains(StandardOpenOption.TRUNCATE_EXISTING))) {
+      throw new IllegalArgumentException("APPEND cannot be combined with READ or TRUNCATE_EXISTING");
+    }
+
+    File file = path.toFile();
+    boolean write = append || opts.contains(StandardOpenOption.WRITE);
+    boolean sync = opts.contains(StandardOpenOption.SYNC);
+    boolean dsync = opts.contains(StandardOpenOption.DSYNC);
+    boolean deleteOnClose = opts.contains(StandardOpenOption.DELETE_ON_CLOSE);
+
+    if (!write) {
+      return wrap(openRandomAccessFile(file, path, "r").getChannel(), file, deleteOnClose, false, false);
+    }
+
+    boolean created = false;
+    if (opts.contains(StandardOpenOption.CREATE_NEW)) {
+      try {
+        created = file.createNewFile();
+      } catch (IOException e) {
+        throw translateCreate(e, file, path);
+      }
+      if (!created) {
+        throw new FileAlreadyExistsException(path.toString());
+      }
+    } else if (!opts.contains(StandardOpenOption.CREATE) && !file.exists()) {
+      throw new NoSuchFileException(path.toString());
+    }
+
+    FileChannel channel = null;
+    try {
+      if (append) {
+        try {
+          channel = new FileOutputStream(file, true).getChannel();
+        } catch (FileNotFoundException e) {
+          throw translate(e, file, path);
         }
+        return wrap(channel, file, deleteOnClose, sync, dsync);
       }
 
-      RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw");
-      return raf.getChannel();
+      String mode = sync ? "rws" : (dsync ? "rwd" : "rw");
+      channel = openRandomAccessFile(file, path, mode).getChannel();
+      if (opts.contains(StandardOpenOption.TRUNCATE_EXISTING)) {
+        channel.truncate(0);
+      }
+      return wrap(channel, file, deleteOnClose, false, false);
+    } catch (IOException e) {
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException closeFailure) {
+          e.addSuppressed(closeFailure);
+        }
+      }
+      // Don't leave behind the empty file CREATE_NEW made if it then can't be opened.
+      if (created) {
+        file.delete();
+      }
+      throw e;
+    }
+  }
+
+  private static Set<OpenOption> toSet(OpenOption[] options) {
+    return new HashSet<OpenOption>(Arrays.asList(options));
+  }
+
+  private static FileChannel wrap(FileChannel channel, File file, boolean deleteOnClose, boolean sync,
+      boolean dsync) {
+    if (!deleteOnClose && !sync && !dsync) {
+      return channel;
     }
+    return new OptionFileChannel(channel, file, deleteOnClose, sync || dsync, sync);
+  }
 
-    throw new UnsupportedOperationException("unsupported options: " + options);
+  private static RandomAccessFile openRandomAccessFile(File file, Path path, String mode) throws IOException {
+    try {
+      return new RandomAccessFile(file, mode);
+    } catch (FileNotFoundException e) {
+      throw translate(e, file, path);
+    }
+  }
+
+  /**
+   * Works out why a file could not be created. The file is known not to exist, so it is either the parent directory
+   * that is missing or the parent that cannot be written to.
+   */
+  private static IOException translateCreate(IOException e, File file, Path path) {
+    File parent = file.getAbsoluteFile().getParentFile();
+    IOException translated;
+    if (parent == null || !parent.isDirectory()) {
+      translated = new NoSuchFileException(path.toString());
+    } else {
+      translated = new AccessDeniedException(path.toString());
+    }
+    translated.initCause(e);
+    return translated;
+  }
+
+  /**
+   * Works out why a file could not be opened, only after the fact.
+   */
+  private static IOException translate(FileNotFoundException e, File file, Path path) {
+    IOException translated;
+    if (!file.exists()) {
+      translated = new NoSuchFileException(path.toString());
+    } else if (file.isDirectory()) {
+      translated = new IOException("Is a directory: " + path);
+    } else {
+      translated = new AccessDeniedException(path.toString());
+    }
+    translated.initCause(e);
+    return translated;
   }
 }
@@ -18,6 +18,7 @@ package org.lukhnos.nnio.file;
 
 import org.lukhnos.nnio.file.attribute.UserPrincipalLookupService;
 import org.lukhnos.nnio.file.impl.FileBasedPathImpl;
+import org.lukhnos.nnio.file.impl.GlobMatcher;
 import org.lukhnos.nnio.file.spi.FileSystemProvider;
 
 import java.io.Closeable;
@@ -51,7 +52,7 @@ public abstract class FileSystem implements Closeable {
 
     @Override
     public PathMatcher getPathMatcher(String syntaxPattern) {
-      return null;
+      return GlobMatcher.get(syntaxPattern);
     }
 
     @Override
@@ -21,5 +21,7 @@ package org.lukhnos.nnio.file;
  */
 public enum FileVisitResult {
   CONTINUE,
+  SKIP_SIBLINGS,
   SKIP_SUBTREE,
+  TERMINATE,
 }
@@ -19,7 +19,22 @@ package org.lukhnos.nnio.file;
 import org.lukhnos.nnio.channels.utils.FileChannelUtils;
 import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
 import org.lukhnos.nnio.file.attribute.FileTime;
+import org.lukhnos.nnio.file.impl.AttributeCache;
+import org.lukhnos.nnio.file.impl.ChunkedFileCopier;
 import org.lukhnos.nnio.file.impl.FileBasedPathImpl;
+import org.lukhnos.nnio.file.impl.FileMover;
+import org.lukhnos.nnio.file.impl.FileTreeCopier;
+import org.lukhnos.nnio.file.impl.FileTreeWalker;
+import org.lukhnos.nnio.file.impl.GlobMatcher;
+import org.lukhnos.nnio.file.impl.IncrementalFileCopier;
+import org.lukhnos.nnio.file.impl.InvalidatingOutputStream;
+import org.lukhnos.nnio.file.impl.KnownDirectories;
+import org.lukhnos.nnio.file.impl.NameListDirectoryStream;
+import org.lukhnos.nnio.file.impl.Nio2Backend;
+import org.lukhnos.nnio.file.impl.Nio2Support;
+import org.lukhnos.nnio.file.impl.OptionFileChannel;
+import org.lukhnos.nnio.file.impl.WorkerPool;
+import org.lukhnos.nnio.file.utils.ExtendedCopyOption;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -32,95 +47,222 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.attribute.FileAttribute;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 /**
  * Substitute for {@link java.nio.file.Files}.
+ *
+ * On runtimes that have java.nio.file, attribute reads, directory listing, tree walking, copying and moving are
+ * passed through to it; see {@link Nio2Support}. Everything else, and all of it on other runtimes, is implemented
+ * with java.io.File.
  */
 public class Files {
+  // Per-thread buffer for copying from streams that are not backed by a file.
+  private static final ThreadLocal<byte[]> COPY_BUFFER = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[65536];
+    }
+  };
 
-  public static Path copy(InputStream source, Path target, CopyOption... ignored) throws IOException {
-    if (ignored.length > 0) {
-      throw new UnsupportedOperationException("CopyOption not supported");
+  /**
+   * The only option supported is REPLACE_EXISTING.
+   *
+   * If the source is a FileInputStream over a regular file, the data is moved with FileChannel.transferFrom and does
+   * not go through the Java heap.
+   */
+  public static Path copy(InputStream source, Path target, CopyOption... options) throws IOException {
+    boolean replaceExisting = false;
+    for (CopyOption option : options) {
+      if (option != StandardCopyOption.REPLACE_EXISTING) {
+        throw new UnsupportedOperationException("CopyOption not supported: " + option);
+      }
+      replaceExisting = true;
     }
 
-    if (Files.exists(target)) {
+    if (!replaceExisting && Files.exists(target)) {
       throw new FileAlreadyExistsException("file already exists: " + target);
     }
 
-    int bufSize = 16384;
-    byte buf[] = new byte[bufSize];
+    try (FileOutputStream fos = new FileOutputStream(target.toFile())) {
+      if (source instanceof FileInputStream) {
+        transferFrom(((FileInputStream) source).getChannel(), fos.getChannel());
+      }
 
-    try (OutputStream fos = newOutputStream(target)) {
+      byte[] buf = COPY_BUFFER.get();
       int read;
-      while ((read = source.read(buf)) > 0) {
+      while ((read = source.read(buf)) != -1) {
         fos.write(buf, 0, read);
       }
+    } finally {
+      AttributeCache.invalidatePath(target.toFile(), false);
     }
 
     return target;
   }
 
-  public static Path copy(Path source, Path target, CopyOption... ignored) throws IOException {
-    if (isDirectory(source)) {
-      throw new UnsupportedOperationException("Directory copy not supported in this implementation");
+  /**
+   * Transfers what remains of a file channel to the current position of dstChannel. Channels that are not seekable,
+   * such as pipes, are left alone so that the caller can fall back to reading the stream.
+   */
+  private static void transferFrom(FileChannel srcChannel, FileChannel dstChannel) throws IOException {
+    long remaining;
+    try {
+      remaining = srcChannel.size() - srcChannel.position();
+    } catch (IOException e) {
+      return;
+    }
+
+    long position = dstChannel.position();
+    while (remaining > 0) {
+      long transferred = dstChannel.transferFrom(srcChannel, position, remaining);
+      if (transferred <= 0) {
+        break;
+      }
+      position += transferred;
+      remaining -= transferred;
     }
+    dstChannel.position(position);
+  }
 
-    if (ignored.length > 0) {
-      throw new UnsupportedOperationException("CopyOption not supported");
+  /**
+   * REPLACE_EXISTING and COPY_ATTRIBUTES are supported. Only the last modified time is copied as an attribute.
+   *
+   * A directory is copied with everything in it if {@link ExtendedCopyOption#RECURSIVE} is given; the files are then
+   * copied in parallel and their last modified times are always kept. A large file is copied as several ranges at the
+   * same time if {@link ExtendedCopyOption#CHUNKED} is given. An existing target is updated in place, with only the
+   * changed blocks written, if {@link ExtendedCopyOption#INCREMENTAL} is given.
+   *
+   * @throws IllegalArgumentException if INCREMENTAL is given and the source is a directory.
+   */
+  public static Path copy(Path source, Path target, CopyOption... options) throws IOException {
+    List<CopyOption> optionList = Arrays.asList(options);
+    for (CopyOption option : optionList) {
+      if (option != StandardCopyOption.REPLACE_EXISTING && option != StandardCopyOption.COPY_ATTRIBUTES
+          && option != ExtendedCopyOption.RECURSIVE && option != ExtendedCopyOption.CHUNKED
+          && option != ExtendedCopyOption.INCREMENTAL) {
+        throw new UnsupportedOperationException("CopyOption not supported: " + option);
+      }
     }
+    boolean replaceExisting = optionList.contains(StandardCopyOption.REPLACE_EXISTING);
 
-    try (FileChannel srcChannel = ((FileInputStream) newInputStream(source)).getChannel();
-         FileChannel dstChannnel = ((FileOutputStream) newOutputStream(target)).getChannel()) {
-      long alreadyRead = 0;
-      long size = srcChannel.size();
-      while (alreadyRead < size) {
-        alreadyRead += dstChannnel.transferFrom(srcChannel, alreadyRead, size - alreadyRead);
+    if (isDirectory(source)) {
+      if (optionList.contains(ExtendedCopyOption.INCREMENTAL)) {
+        throw new IllegalArgumentException("INCREMENTAL cannot be used to copy a directory");
       }
+      if (!optionList.contains(ExtendedCopyOption.RECURSIVE)) {
+        throw new UnsupportedOperationException("Directory copy not supported in this implementation");
+      }
+      try {
+        FileTreeCopier.copy(source.toFile(), target.toFile(), replaceExisting, WorkerPool.get());
+      } finally {
+        AttributeCache.invalidatePath(target.toFile(), true);
+      }
+      return target;
     }
 
+    boolean copyAttributes = optionList.contains(StandardCopyOption.COPY_ATTRIBUTES);
+    try {
+      if (optionList.contains(ExtendedCopyOption.INCREMENTAL)) {
+        IncrementalFileCopier.copy(source.toFile(), target.toFile(), copyAttributes);
+      } else if (optionList.contains(ExtendedCopyOption.CHUNKED)) {
+        ChunkedFileCopier.copy(source.toFile(), target.toFile(), replaceExisting, copyAttributes, WorkerPool.get());
+      } else if (Nio2Support.ENABLED) {
+        Nio2Backend.copy(source, target, optionList);
+      } else {
+        FileTreeCopier.copyFile(source.toFile(), target.toFile(), replaceExisting, copyAttributes);
+      }
+    } finally {
+      AttributeCache.invalidatePath(target.toFile(), false);
+    }
     return target;
   }
 
+  /**
+   * Ancestors that an earlier call has created or seen are not checked again. Creating a directory that another
+   * thread has just created is not an error.
+   */
   public static Path createDirectories(Path dir) throws IOException {
     if (dir == null) {
       return dir;
     }
 
-    if (dir.toFile() == null) {
-      return dir;
+    File absDir = dir.toFile().getAbsoluteFile();
+    if (!makeDirectories(absDir, true)) {
+      // A directory believed to exist is gone. Start over from what is actually there.
+      KnownDirectories.clear();
+      makeDirectories(absDir, false);
     }
+    return dir;
+  }
 
-    if (exists(dir)) {
-      if (isDirectory(dir)) {
-        return dir;
-      } else {
-        throw new FileAlreadyExistsException("Path is not a directory: " + dir);
+  /**
+   * Creates the missing directories from the nearest existing ancestor down. Returns false if trustKnown is true and
+   * an ancestor taken from {@link KnownDirectories} turns out to be missing.
+   */
+  private static boolean makeDirectories(File absDir, boolean trustKnown) throws IOException {
+    Deque<File> missing = new ArrayDeque<File>();
+    File current = absDir;
+    while (current != null) {
+      // The directory itself is always checked, so that a stale entry cannot make this a no-op.
+      if (trustKnown && current != absDir && KnownDirectories.contains(current)) {
+        break;
+      }
+      if (isExistingDirectory(current)) {
+        KnownDirectories.add(current);
+        break;
       }
+      missing.push(current);
+      current = current.getParentFile();
     }
 
-    Path parent = dir.getParent();
-    if (parent != null) {
-      createDirectories(dir.getParent());
+    while (!missing.isEmpty()) {
+      File next = missing.pop();
+      if (next.mkdir()) {
+        AttributeCache.invalidatePath(next, false);
+      } else if (!isExistingDirectory(next)) {
+        if (trustKnown) {
+          return false;
+        }
+        throw new IOException("Failed creating directory: " + next);
+      }
+      KnownDirectories.add(next);
     }
+    return true;
+  }
 
-    if (dir.toFile().mkdir()) {
-      return dir;
+  /**
+   * Returns false if the file does not exist, and throws if it exists but is not a directory. A directory created by
+   * another thread between the checks counts as existing.
+   */
+  private static boolean isExistingDirectory(File file) throws FileAlreadyExistsException {
+    if (file.isDirectory()) {
+      return true;
     }
-
-    throw new IOException("Failed creating directory: " + dir);
+    if (!file.exists()) {
+      return false;
+    }
+    if (file.isDirectory()) {
+      return true;
+    }
+    throw new FileAlreadyExistsException("Path is not a directory: " + file);
   }
 
   public static Path createDirectory(Path dir) throws IOException {
     Path absDir = dir.toAbsolutePath();
     if (absDir.toFile().mkdir()) {
+      AttributeCache.invalidatePath(absDir.toFile(), false);
       return dir;
     }
 
@@ -141,6 +283,7 @@ public class Files {
 
       throw new IOException("File cannot be created: " + path);
     }
+    AttributeCache.invalidatePath(f, false);
     return path;
   }
 
@@ -152,6 +295,7 @@ public class Files {
     File tmpFile = File.createTempFile(prefix, "");
     tmpFile.delete();
     tmpFile.mkdir();
+    AttributeCache.invalidatePath(tmpFile, false);
     return FileBasedPathImpl.get(tmpFile);
   }
 
@@ -159,6 +303,7 @@ public class Files {
     File tmpFile = File.createTempFile(prefix, "", path.toFile());
     tmpFile.delete();
     tmpFile.mkdir();
+    AttributeCache.invalidatePath(tmpFile, false);
     return FileBasedPathImpl.get(tmpFile);
   }
 
@@ -167,35 +312,63 @@ public class Files {
     if (attrs.length > 0) {
       throw new UnsupportedOperationException("FileAttribute not suppported");
     }
-    return FileBasedPathImpl.get(File.createTempFile(prefix, suffix, dir.toFile()));
+    File tmpFile = File.createTempFile(prefix, suffix, dir.toFile());
+    AttributeCache.invalidatePath(tmpFile, false);
+    return FileBasedPathImpl.get(tmpFile);
   }
 
   public static Path createTempFile(String prefix, String suffix, FileAttribute<?>... attrs) throws IOException {
     if (attrs.length > 0) {
       throw new UnsupportedOperationException("FileAttribute not suppported");
     }
-    return FileBasedPathImpl.get(File.createTempFile(prefix, suffix));
+    File tmpFile = File.createTempFile(prefix, suffix);
+    AttributeCache.invalidatePath(tmpFile, false);
+    return FileBasedPathImpl.get(tmpFile);
   }
 
   public static void delete(Path path) throws IOException {
-    if (notExists(path)) {
-      throw new NoSuchFileException("no such file: " + path);
+    File file = path.toFile();
+    if (!file.delete()) {
+      throw deleteFailure(path);
     }
-    path.toFile().delete();
+    KnownDirectories.remove(file, false);
+    AttributeCache.invalidatePath(file, false);
   }
 
   public static boolean deleteIfExists(Path path) throws IOException {
-    if (exists(path)) {
-      if (!path.toAbsolutePath().toFile().delete()) {
-        throw new IOException("Could not delete path: " + path);
+    File file = path.toFile();
+    if (!file.delete()) {
+      if (!file.exists()) {
+        return false;
       }
-      return true;
-    } else {
-      return false;
+      throw deleteFailure(path);
+    }
+    KnownDirectories.remove(file, false);
+    AttributeCache.invalidatePath(file, false);
+    return true;
+  }
+
+  /**
+   * Tells why File.delete() failed. Only called after a failure, so that a successful delete is a single call.
+   */
+  private static IOException deleteFailure(Path path) {
+    File file = path.toFile();
+    if (!file.exists()) {
+      return new NoSuchFileException("no such file: " + path);
     }
+
+    String[] names = file.list();
+    if (names != null && names.length > 0) {
+      return new DirectoryNotEmptyException(path.toString());
+    }
+    return new IOException("Could not delete path: " + path);
   }
 
   public static boolean exists(Path path) {
+    AttributeCache cache = AttributeCache.get();
+    if (cache != null) {
+      return cache.read(path.toFile()) != null;
+    }
     return path.toFile().getAbsoluteFile().exists();
   }
 
@@ -208,16 +381,58 @@ public class Files {
   }
 
   public static FileTime getLastModifiedTime(Path path) throws IOException {
-    return new BasicFileAttributes(path.toFile()).lastModifiedTime();
+    AttributeCache cache = AttributeCache.get();
+    if (cache != null) {
+      BasicFileAttributes attrs = cache.read(path.toFile());
+      return attrs == null ? FileTime.fromMillis(0) : attrs.lastModifiedTime();
+    }
+    return FileTime.fromMillis(path.toFile().lastModified());
   }
 
   public static boolean isDirectory(Path path) {
     if (path.toFile().getParent() == null) {
       return true;
     }
+    AttributeCache cache = AttributeCache.get();
+    if (cache != null) {
+      BasicFileAttributes attrs = cache.read(path.toFile());
+      return attrs != null && attrs.isDirectory();
+    }
     return path.toFile().isDirectory();
   }
 
+  /**
+   * Paths that are equal are the same file, and nothing is read. Otherwise, with java.nio.file the file keys are
+   * compared; without it the canonical forms are, and the canonical form of a path is computed once and then kept.
+   *
+   * @throws NoSuchFileException if either path does not exist, when they are not equal.
+   */
+  public static boolean isSameFile(Path path, Path path2) throws IOException {
+    if (path.equals(path2)) {
+      return true;
+    }
+    if (Nio2Support.ENABLED) {
+      return Nio2Backend.isSameFile(path, path2);
+    }
+
+    File file = canonicalFile(path);
+    File file2 = canonicalFile(path2);
+    if (!file.exists()) {
+      throw new NoSuchFileException(path.toString());
+    }
+    if (!file2.exists()) {
+      throw new NoSuchFileException(path2.toString());
+    }
+    return file.equals(file2);
+  }
+
+  private static File canonicalFile(Path path) throws IOException {
+    if (path instanceof FileBasedPathImpl) {
+      return ((FileBasedPathImpl) path).toCanonicalFile();
+    }
+    return path.toFile().getCanonicalFile();
+  }
+
   public static boolean isReadable(Path path) {
     if (path.toFile().getParent() == null) {
       return true;
@@ -226,7 +441,12 @@ public class Files {
   }
 
   public static boolean isRegularFile(Path path) {
-    throw new UnsupportedOperationException();
+    AttributeCache cache = AttributeCache.get();
+    if (cache != null) {
+      BasicFileAttributes attrs = cache.read(path.toFile());
+      return attrs != null && attrs.isRegularFile();
+    }
+    return path.toFile().isFile();
   }
 
   public static boolean isWritable(Path path) {
@@ -237,22 +457,30 @@ public class Files {
   }
 
   /**
-   * The only option supported is REPLACE_EXISTING. ATOMIC_MOVE is ignored.
+   * The only options supported are REPLACE_EXISTING and ATOMIC_MOVE.
+   *
+   * A move is a rename if possible. If the rename fails, for example because the source and the target are on
+   * different file systems, a regular file is copied into a temporary file next to the target, which is then renamed
+   * into place before the source is deleted. With ATOMIC_MOVE, AtomicMoveNotSupportedException is thrown instead.
+   * With REPLACE_EXISTING, the target is deleted only if renaming over it fails, as it does on Windows.
    */
   public static Path move(Path source, Path target, CopyOption... options) throws IOException {
-    if (Files.exists(target)) {
-      if (Arrays.asList(options).contains(StandardCopyOption.REPLACE_EXISTING)) {
-        Files.delete(target);
+    List<CopyOption> optionList = Arrays.asList(options);
+    File sourceFile = source.toFile();
+    File targetFile = target.toFile();
+    try {
+      if (Nio2Support.ENABLED) {
+        Nio2Backend.move(source, target, optionList);
       } else {
-        throw new FileAlreadyExistsException("file already exists: " + target);
+        FileMover.move(source, target, optionList.contains(StandardCopyOption.REPLACE_EXISTING),
+            optionList.contains(StandardCopyOption.ATOMIC_MOVE));
       }
+    } finally {
+      KnownDirectories.remove(sourceFile, true);
+      AttributeCache.invalidatePath(sourceFile, true);
+      AttributeCache.invalidatePath(targetFile, true);
     }
-
-    if (source.toFile().renameTo(target.toFile())) {
-      return target;
-    }
-
-    throw new IOException("Move from " + source + " to " + target + " failed");
+    return target;
   }
 
   public static BufferedReader newBufferedReader(Path path, Charset charset) throws IOException {
@@ -260,101 +488,149 @@ public class Files {
   }
 
   public static BufferedWriter newBufferedWriter(Path path, Charset charset) throws IOException {
-    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path.toFile()), charset));
+    AttributeCache.invalidatePath(path.toFile(), false);
+    return new BufferedWriter(new OutputStreamWriter(invalidateOnClose(new FileOutputStream(path.toFile()), path),
+        charset));
   }
 
+  /**
+   * See {@link FileChannelUtils#open(Path, OpenOption...)} for how the options are handled.
+   */
   public static SeekableByteChannel newByteChannel(Path path, OpenOption... options) throws IOException {
-    return FileChannelUtils.open(path, options);
+    AttributeCache.invalidatePath(path.toFile(), false);
+    FileChannel channel = FileChannelUtils.open(path, options);
+    if (AttributeCache.get() == null) {
+      return channel;
+    }
+    return new OptionFileChannel(channel, path.toFile(), false, false, false);
   }
 
   public static DirectoryStream<Path> newDirectoryStream(Path dir) throws IOException {
     return newDirectoryStream(dir, "*");
   }
 
+  /**
+   * Entries are matched by name before a Path is created for them.
+   */
   public static DirectoryStream<Path> newDirectoryStream(Path dir, String pattern) throws IOException {
-    if (Files.notExists(dir)) {
-      throw new NoSuchFileException("Not found: " + dir);
-    }
-
-    if (!Files.isDirectory(dir)) {
-      throw new IOException("Not a directory: " + dir);
+    if (Nio2Support.ENABLED) {
+      return Nio2Backend.newDirectoryStream(dir, pattern);
     }
 
-    String escapedRegexStr = Pattern.quote(pattern).replace("?", "\\E.?\\Q").replace("*", "\\E.*?\\Q");
-    final Pattern regex = Pattern.compile(escapedRegexStr);
+    final GlobMatcher matcher = GlobMatcher.forGlob(pattern);
     FilenameFilter filter = new FilenameFilter() {
       @Override
       public boolean accept(File dir, String name) {
-        return regex.matcher(name).matches();
+        return matcher.matches(name);
       }
     };
+    return NameListDirectoryStream.open(dir, filter, null);
+  }
 
-    List<Path> paths = new ArrayList<Path>();
-    File[] files = dir.toFile().listFiles(filter);
-    for (File file : files) {
-      paths.add(FileBasedPathImpl.get(file));
-    }
-    return new DirectoryStream.SimpleDirectoryStream<Path>(paths);
+  /**
+   * Paths are created as the iterator is consumed. An IOException thrown by the filter is rethrown by the iterator
+   * as a {@link DirectoryIteratorException}.
+   */
+  public static DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws
+      IOException {
+    return NameListDirectoryStream.open(dir, null, filter);
   }
 
   public static InputStream newInputStream(Path path) throws IOException {
     return new FileInputStream(path.toFile());
   }
 
+  /**
+   * Without options, the file is created or truncated. Otherwise the options are those of
+   * {@link #newByteChannel(Path, OpenOption...)}, with WRITE implied.
+   *
+   * @throws IllegalArgumentException if READ is given.
+   */
   public static OutputStream newOutputStream(Path path, OpenOption... options) throws IOException {
-    if (options.length > 0) {
-      throw new UnsupportedOperationException("OpenOption not supported");
+    AttributeCache.invalidatePath(path.toFile(), false);
+    if (options.length == 0) {
+      return invalidateOnClose(new FileOutputStream(path.toFile()), path);
     }
 
-    return new FileOutputStream(path.toFile());
+    Set<OpenOption> optionSet = new HashSet<OpenOption>(Arrays.asList(options));
+    if (optionSet.contains(StandardOpenOption.READ)) {
+      throw new IllegalArgumentException("READ not allowed");
+    }
+    optionSet.add(StandardOpenOption.WRITE);
+    return invalidateOnClose(Channels.newOutputStream(FileChannelUtils.open(path, optionSet)), path);
+  }
+
+  /**
+   * Makes a stream opened for writing invalidate the cached attributes of the file again when it is closed.
+   */
+  private static OutputStream invalidateOnClose(OutputStream out, Path path) {
+    return AttributeCache.get() == null ? out : new InvalidatingOutputStream(out, path.toFile());
   }
 
   public static boolean notExists(Path path) {
     return !exists(path);
   }
 
+  /**
+   * LinkOption is only supported when java.nio.file is available.
+   */
   public static BasicFileAttributes readAttributes(Path path, Class<?> clz, LinkOption... options) throws
-      NoSuchFileException {
+      IOException {
+    if (!BasicFileAttributes.class.isAssignableFrom(clz)) {
+      throw new UnsupportedOperationException("unsupported type: " + clz);
+    }
+
     if (options.length > 0) {
-      throw new UnsupportedOperationException("LinkOption not supported");
+      if (!Nio2Support.ENABLED) {
+        throw new UnsupportedOperationException("LinkOption not supported");
+      }
+      return Nio2Backend.readAttributes(path, options);
     }
 
-    if (!BasicFileAttributes.class.isAssignableFrom(clz)) {
-      throw new UnsupportedOperationException("unsupported type: " + clz);
+    AttributeCache cache = AttributeCache.get();
+    if (cache != null) {
+      BasicFileAttributes attrs = cache.read(path.toFile());
+      if (attrs != null) {
+        return attrs;
+      }
+      throw new NoSuchFileException(path.toString());
+    }
+
+    if (Nio2Support.ENABLED) {
+      return Nio2Backend.readAttributes(path);
     }
 
-    if (exists(path)) {
-      return new BasicFileAttributes(path.toFile());
+    BasicFileAttributes attrs = new BasicFileAttributes(path.toFile());
+    if (attrs.isDirectory() || attrs.isRegularFile() || attrs.isOther()) {
+      return attrs;
     }
 
     throw new NoSuchFileException(path.toString());
   }
 
   public static long size(Path path) throws IOException {
+    AttributeCache cache = AttributeCache.get();
+    if (cache != null) {
+      BasicFileAttributes attrs = cache.read(path.toFile());
+      return attrs == null ? 0 : attrs.size();
+    }
     return path.toFile().length();
   }
 
   public static Path walkFileTree(Path start, FileVisitor<? super Path> visitor) throws IOException {
-    File file = start.toFile();
-    if (!file.canRead()) {
-      visitor.visitFileFailed(start, new AccessDeniedException(file.toString()));
-      return start;
-    }
-    if (Files.isDirectory(start)) {
-      FileVisitResult preVisitDirectoryResult = visitor.preVisitDirectory(start, null);
-      if (preVisitDirectoryResult == FileVisitResult.CONTINUE) {
-        File[] children = start.toFile().listFiles();
-        if (children != null) {
-          for (File child : children) {
-            walkFileTree(FileBasedPathImpl.get(child), visitor);
-          }
-          visitor.postVisitDirectory(start, null);
-        }
-      }
-      // Only FileVisitResult.CONTINUE and FileVisitResult.SKIP_SUBTREE are implemented.
-      // FileVisitResult.SKIP_SUBTREE is handled simply by the fact that nothing is done for it.
+    return walkFileTree(start, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, visitor);
+  }
+
+  /**
+   * The tree is walked without recursion, and every FileVisitResult is honored. Symbolic links to directories are
+   * only followed with {@link FileVisitOption#FOLLOW_LINKS}.
+   */
+  public static Path walkFileTree(Path start, Set<FileVisitOption> options, int maxDepth,
+      FileVisitor<? super Path> visitor) throws IOException {
+    if (Nio2Support.ENABLED) {
+      Nio2Backend.walkFileTree(start, options, maxDepth, visitor);
     } else {
-      visitor.visitFile(start, new BasicFileAttributes(file));
+      FileTreeWalker.walk(start, options.contains(FileVisitOption.FOLLOW_LINKS), maxDepth, visitor);
     }
     return start;
   }
@@ -21,5 +21,6 @@ package org.lukhnos.nnio.file;
  */
 public enum StandardCopyOption implements CopyOption {
   ATOMIC_MOVE,
+  COPY_ATTRIBUTES,
   REPLACE_EXISTING
 }
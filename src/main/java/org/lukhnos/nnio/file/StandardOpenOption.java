@@ -24,6 +24,10 @@ public enum StandardOpenOption implements OpenOption {
   CREATE,
   CREATE_NEW,
   DELETE_ON_CLOSE,
+  DSYNC,
   READ,
+  SPARSE,
+  SYNC,
+  TRUNCATE_EXISTING,
   WRITE
 }
@@ -20,23 +20,93 @@ import java.io.File;
 
 /**
  * Substitute for {@link java.nio.file.attribute.BasicFileAttributes}.
+ *
+ * This is an immutable snapshot. All attributes are read when the object is created, so that the accessors do not
+ * go back to the file system. When read with java.io.File, which follows symbolic links, isSymbolicLink() is always
+ * false, and creation and last access times are not available and are reported as the last modified time.
  */
 public class BasicFileAttributes {
+  private final Object fileKey;
+  private final FileTime creationTime;
+  private final FileTime lastAccessTime;
+  private final FileTime lastModifiedTime;
+  private final long size;
+  private final boolean isDirectory;
+  private final boolean isRegularFile;
+  private final boolean isSymbolicLink;
+  private final boolean isOther;
 
-  private final File file;
+  /**
+   * Creates a snapshot from attributes read elsewhere.
+   */
+  public BasicFileAttributes(Object fileKey, FileTime creationTime, FileTime lastAccessTime,
+                             FileTime lastModifiedTime, long size, boolean isDirectory, boolean isRegularFile,
+                             boolean isSymbolicLink, boolean isOther) {
+    this.fileKey = fileKey;
+    this.creationTime = creationTime;
+    this.lastAccessTime = lastAccessTime;
+    this.lastModifiedTime = lastModifiedTime;
+    this.size = size;
+    this.isDirectory = isDirectory;
+    this.isRegularFile = isRegularFile;
+    this.isSymbolicLink = isSymbolicLink;
+    this.isOther = isOther;
+  }
 
   public BasicFileAttributes(File file) {
-    this.file = file;
+    isSymbolicLink = false;
+    if (file == null) {
+      fileKey = null;
+      lastModifiedTime = new FileTime(0);
+      size = 0;
+      isDirectory = false;
+      isRegularFile = false;
+      isOther = false;
+    } else {
+      fileKey = file.getAbsoluteFile().toString();
+      lastModifiedTime = new FileTime(file.lastModified());
+      isDirectory = file.isDirectory();
+      isRegularFile = !isDirectory && file.isFile();
+      size = isRegularFile ? file.length() : 0;
+      isOther = !isDirectory && !isRegularFile && file.exists();
+    }
+    creationTime = lastModifiedTime;
+    lastAccessTime = lastModifiedTime;
+  }
+
+  public FileTime creationTime() {
+    return creationTime;
   }
 
   public Object fileKey() {
-    return file.getAbsoluteFile().toString();
+    return fileKey;
+  }
+
+  public boolean isDirectory() {
+    return isDirectory;
+  }
+
+  public boolean isOther() {
+    return isOther;
+  }
+
+  public boolean isRegularFile() {
+    return isRegularFile;
+  }
+
+  public boolean isSymbolicLink() {
+    return isSymbolicLink;
+  }
+
+  public FileTime lastAccessTime() {
+    return lastAccessTime;
   }
 
   public FileTime lastModifiedTime() {
-    if (file != null) {
-      return new FileTime(file.lastModified());
-    }
-    return new FileTime(0);
+    return lastModifiedTime;
+  }
+
+  public long size() {
+    return size;
   }
 }
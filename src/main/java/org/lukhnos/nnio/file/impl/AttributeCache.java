@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache of {@link BasicFileAttributes} snapshots with a time to live.
+ *
+ * Entries are keyed by normalized absolute path, and a missing file is cached as such. Files invalidates the entries
+ * of the paths it changes, along with their parent directories, whose last modified times change with them. Changes
+ * made by other means are only picked up when an entry expires. Use
+ * {@link org.lukhnos.nnio.file.utils.MetadataCache} to turn this on.
+ */
+public final class AttributeCache {
+  private static volatile AttributeCache instance;
+
+  private final long ttlMillis;
+  private final LinkedHashMap<String, CacheEntry> map;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  // Bumped on every invalidation, so that a snapshot read concurrently with a change is not put back in the cache.
+  private long generation;
+
+  private AttributeCache(final int maxEntries, long ttlMillis) {
+    this.ttlMillis = ttlMillis;
+    this.map = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Returns the cache in use, or null if caching is off.
+   */
+  public static AttributeCache get() {
+    return instance;
+  }
+
+  public static void enable(int maxEntries, long ttlMillis) {
+    if (maxEntries <= 0 || ttlMillis <= 0) {
+      throw new IllegalArgumentException("maxEntries and ttlMillis must be positive");
+    }
+    instance = new AttributeCache(maxEntries, ttlMillis);
+  }
+
+  public static void disable() {
+    instance = null;
+  }
+
+  /**
+   * Invalidates a changed file or directory, if caching is on. See {@link #invalidate(File, boolean)}.
+   */
+  public static void invalidatePath(File file, boolean tree) {
+    AttributeCache cache = instance;
+    if (cache != null) {
+      cache.invalidate(file, tree);
+    }
+  }
+
+  /**
+   * Returns the attributes of the file, or null if it does not exist.
+   */
+  public BasicFileAttributes read(File file) {
+    String key = key(file);
+    long now = System.currentTimeMillis();
+    long readGeneration;
+    synchronized (this) {
+      CacheEntry entry = map.get(key);
+      if (entry != null && entry.expiresAt > now) {
+        hits.incrementAndGet();
+        return entry.attrs;
+      }
+      readGeneration = generation;
+    }
+
+    misses.incrementAndGet();
+    BasicFileAttributes attrs = load(file);
+
+    synchronized (this) {
+      if (readGeneration == generation) {
+        map.put(key, new CacheEntry(attrs, now + ttlMillis));
+      }
+    }
+    return attrs;
+  }
+
+  /**
+   * Returns the absolute path of the file with "." and ".." removed, so that every spelling of a path shares an entry.
+   */
+  private static String key(File file) {
+    return FileBasedPathImpl.get(file.getAbsoluteFile()).normalize().toString();
+  }
+
+  private static BasicFileAttributes load(File file) {
+    if (Nio2Support.ENABLED) {
+      return Nio2Backend.readAttributesIfExists(file);
+    }
+
+    BasicFileAttributes attrs = new BasicFileAttributes(file);
+    if (!attrs.isDirectory() && !attrs.isRegularFile() && !attrs.isOther()) {
+      return null;
+    }
+    return attrs;
+  }
+
+  /**
+   * Removes the entries of the file and its parent directory. If tree is true, the entries of everything under the
+   * file are removed as well, which takes time proportional to the size of the cache.
+   */
+  public synchronized void invalidate(File file, boolean tree) {
+    generation++;
+    String key = key(file);
+    map.remove(key);
+    String parent = new File(key).getParent();
+    if (parent != null) {
+      map.remove(parent);
+    }
+
+    if (tree) {
+      String prefix = key.endsWith(File.separator) ? key : key + File.separator;
+      Iterator<String> iter = map.keySet().iterator();
+      while (iter.hasNext()) {
+        if (iter.next().startsWith(prefix)) {
+          iter.remove();
+        }
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    generation++;
+    map.clear();
+  }
+
+  public long hitCount() {
+    return hits.get();
+  }
+
+  public long missCount() {
+    return misses.get();
+  }
+
+  private static class CacheEntry {
+    final BasicFileAttributes attrs;
+    final long expiresAt;
+
+    CacheEntry(BasicFileAttributes attrs, long expiresAt) {
+      this.attrs = attrs;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.FileAlreadyExistsException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Copies a large file by splitting it into ranges that are copied at the same time.
+ *
+ * The target is presized first, and every range is then written with a positional transferFrom into the one target
+ * channel. Since transferFrom reads from the current position of its source, each range reads through a source
+ * channel of its own. Files smaller than {@link #MIN_CHUNKED_SIZE} are copied on the calling thread.
+ *
+ * Like {@link FileTreeCopier#copyFile}, the copy stops at the end of a source that gets shorter, and the target is
+ * cut to the new size. If a range fails, the partly written target is deleted.
+ */
+public final class ChunkedFileCopier {
+  public static final long MIN_CHUNKED_SIZE = 64L * 1024 * 1024;
+  private static final long MIN_CHUNK_SIZE = 16L * 1024 * 1024;
+
+  private ChunkedFileCopier() {
+  }
+
+  public static void copy(File source, File target, boolean replaceExisting, boolean copyAttributes,
+                          ForkJoinPool pool) throws IOException {
+    copy(source, target, replaceExisting, copyAttributes, pool, MIN_CHUNKED_SIZE, MIN_CHUNK_SIZE);
+  }
+
+  static void copy(File source, File target, boolean replaceExisting, boolean copyAttributes, ForkJoinPool pool,
+                   long minChunkedSize, long minChunkSize) throws IOException {
+    long size = source.length();
+    if (size < minChunkedSize) {
+      FileTreeCopier.copyFile(source, target, replaceExisting, copyAttributes);
+      return;
+    }
+
+    if (!replaceExisting && target.exists()) {
+      throw new FileAlreadyExistsException("file already exists: " + target);
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+      raf.setLength(size);
+      FileChannel dstChannel = raf.getChannel();
+
+      long chunks = Math.max(1, Math.min(pool.getParallelism(), size / minChunkSize));
+      long chunkSize = (size + chunks - 1) / chunks;
+      Queue<IOException> failures = new ConcurrentLinkedQueue<IOException>();
+      final List<RangeTask> tasks = new ArrayList<RangeTask>();
+      for (long position = 0; position < size; position += chunkSize) {
+        tasks.add(new RangeTask(source, dstChannel, position, Math.min(chunkSize, size - position), failures));
+      }
+
+      pool.invoke(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          invokeAll(tasks);
+        }
+      });
+
+      Iterator<IOException> iter = failures.iterator();
+      if (iter.hasNext()) {
+        IOException first = iter.next();
+        while (iter.hasNext()) {
+          first.addSuppressed(iter.next());
+        }
+        throw first;
+      }
+
+      long end = source.length();
+      if (end < size) {
+        dstChannel.truncate(end);
+      }
+    } catch (IOException | RuntimeException e) {
+      target.delete();
+      throw e;
+    }
+
+    if (copyAttributes) {
+      target.setLastModified(source.lastModified());
+    }
+  }
+
+  private static class RangeTask extends RecursiveAction {
+    private final File source;
+    private final FileChannel dstChannel;
+    private final long position;
+    private final long count;
+    private final Queue<IOException> failures;
+
+    RangeTask(File source, FileChannel dstChannel, long position, long count, Queue<IOException> failures) {
+      this.source = source;
+      this.dstChannel = dstChannel;
+      this.position = position;
+      this.count = count;
+      this.failures = failures;
+    }
+
+    @Override
+    protected void compute() {
+      try (FileChannel srcChannel = new FileInputStream(source).getChannel()) {
+        srcChannel.position(position);
+        long done = 0;
+        while (done < count) {
+          long transferred = dstChannel.transferFrom(srcChannel, position + done, count - done);
+          if (transferred <= 0) {
+            // The source got shorter.
+            break;
+          }
+          done += transferred;
+        }
+      } catch (IOException e) {
+        failures.add(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.utils.DirectoryListing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Lists a directory into a {@link DirectoryListing}.
+ *
+ * Without java.nio.file, each entry takes a File and four stat calls, but no Path or attribute objects. Entries that
+ * disappear between listing and reading their attributes, including dangling symbolic links, are left out, as are
+ * those whose attributes cannot be read.
+ */
+public final class DirectoryLister {
+  private String[] names;
+  private long[] sizes;
+  private long[] lastModifiedTimes;
+  private final BitSet directories = new BitSet();
+  private final BitSet regularFiles = new BitSet();
+  private int count;
+
+  public DirectoryLister(int expectedEntries) {
+    int capacity = Math.max(expectedEntries, 16);
+    names = new String[capacity];
+    sizes = new long[capacity];
+    lastModifiedTimes = new long[capacity];
+  }
+
+  public static DirectoryListing list(Path dir) throws IOException {
+    if (Nio2Support.ENABLED) {
+      return Nio2Backend.list(dir);
+    }
+
+    File file = dir.toFile();
+    String[] names = file.list();
+    if (names == null) {
+      if (!file.exists()) {
+        throw new NoSuchFileException("Not found: " + dir);
+      }
+      if (!file.isDirectory()) {
+        throw new IOException("Not a directory: " + dir);
+      }
+      throw new IOException("Cannot list directory: " + dir);
+    }
+
+    DirectoryLister lister = new DirectoryLister(names.length);
+    for (String name : names) {
+      File child = new File(file, name);
+      boolean isDirectory = child.isDirectory();
+      boolean isRegularFile = !isDirectory && child.isFile();
+      if (!isDirectory && !isRegularFile && !child.exists()) {
+        continue;
+      }
+      lister.add(name, child.length(), child.lastModified(), isDirectory, isRegularFile);
+    }
+    return lister.toListing(dir);
+  }
+
+  public void add(String name, long size, long lastModifiedTime, boolean isDirectory, boolean isRegularFile) {
+    if (count == names.length) {
+      int capacity = count * 2;
+      names = Arrays.copyOf(names, capacity);
+      sizes = Arrays.copyOf(sizes, capacity);
+      lastModifiedTimes = Arrays.copyOf(lastModifiedTimes, capacity);
+    }
+    names[count] = name;
+    sizes[count] = size;
+    lastModifiedTimes[count] = lastModifiedTime;
+    directories.set(count, isDirectory);
+    regularFiles.set(count, isRegularFile);
+    count++;
+  }
+
+  public DirectoryListing toListing(Path dir) {
+    if (count != names.length) {
+      names = Arrays.copyOf(names, count);
+      sizes = Arrays.copyOf(sizes, count);
+      lastModifiedTimes = Arrays.copyOf(lastModifiedTimes, count);
+    }
+    return new DirectoryListing(dir, names, sizes, lastModifiedTimes, directories, regularFiles);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.AccessDeniedException;
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
+import org.lukhnos.nnio.file.utils.DiskUsage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Adds up the sizes of the files in a directory tree with a fork-join pool.
+ *
+ * Each directory is a task that forks its subdirectories and sums its files. With java.nio.file, each entry costs a
+ * single attribute read that does not follow links, and symbolic links are neither followed nor counted. Otherwise a
+ * file costs an isDirectory and a length call, plus an isFile call only if its length is 0, and a directory costs a
+ * canonicalization as well, to find symbolic links to directories, which are not followed. Directories that cannot
+ * be listed do not stop the count; they are reported with the partial totals.
+ */
+public final class DiskUsageCounter {
+  private final Map<Path, DiskUsage> breakdown;
+  private final Queue<IOException> failures = new ConcurrentLinkedQueue<IOException>();
+
+  private DiskUsageCounter(Map<Path, DiskUsage> breakdown) {
+    this.breakdown = breakdown;
+  }
+
+  /**
+   * If breakdown is not null, the usage under every directory in the tree is put in it. The failures are only
+   * reported in the returned usage.
+   *
+   * @throws NoSuchFileException if start does not exist.
+   */
+  public static DiskUsage count(Path start, Map<Path, DiskUsage> breakdown, ForkJoinPool pool) throws IOException {
+    File file = start.toFile();
+    if (!file.isDirectory()) {
+      if (!file.exists()) {
+        throw new NoSuchFileException(start.toString());
+      }
+      return new DiskUsage(file.length(), 1, 0);
+    }
+
+    Map<Path, DiskUsage> collected = breakdown == null ? null : new ConcurrentHashMap<Path, DiskUsage>();
+    DiskUsageCounter counter = new DiskUsageCounter(collected);
+    String canonicalPath = Nio2Support.ENABLED ? null : file.getCanonicalPath();
+    DiskUsage usage = pool.invoke(counter.new DirectoryTask(start, file, canonicalPath));
+
+    if (breakdown != null) {
+      breakdown.putAll(collected);
+    }
+    if (counter.failures.isEmpty()) {
+      return usage;
+    }
+    return new DiskUsage(usage.size(), usage.fileCount(), usage.directoryCount(),
+        new ArrayList<IOException>(counter.failures));
+  }
+
+  private class DirectoryTask extends RecursiveTask<DiskUsage> {
+    private final Path path;
+    private final File dir;
+    // Only used without java.nio.file, to tell symbolic links to directories apart.
+    private final String canonicalPath;
+
+    DirectoryTask(Path path, File dir, String canonicalPath) {
+      this.path = path;
+      this.dir = dir;
+      this.canonicalPath = canonicalPath;
+    }
+
+    @Override
+    protected DiskUsage compute() {
+      String[] names = dir.list();
+      if (names == null) {
+        failures.add(new AccessDeniedException(dir.toString()));
+        return new DiskUsage(0, 0, 1);
+      }
+
+      long size = 0;
+      long fileCount = 0;
+      long directoryCount = 1;
+      List<DirectoryTask> tasks = new ArrayList<DirectoryTask>();
+      for (String name : names) {
+        File child = new File(dir, name);
+        if (Nio2Support.ENABLED) {
+          BasicFileAttributes attrs;
+          try {
+            attrs = Nio2Backend.readLinkAttributesIfExists(child);
+          } catch (IOException e) {
+            failures.add(e);
+            continue;
+          }
+          if (attrs == null || attrs.isSymbolicLink()) {
+            continue;
+          }
+          if (attrs.isDirectory()) {
+            Path childPath = breakdown == null ? null : FileBasedPathImpl.get(child);
+            tasks.add(new DirectoryTask(childPath, child, null));
+          } else if (attrs.size() > 0 || attrs.isRegularFile()) {
+            size += attrs.size();
+            fileCount++;
+          }
+        } else if (child.isDirectory()) {
+          String childCanonicalPath;
+          try {
+            childCanonicalPath = child.getCanonicalPath();
+          } catch (IOException e) {
+            failures.add(e);
+            continue;
+          }
+          if (!FileTreeWalker.isLink(child, childCanonicalPath, canonicalPath)) {
+            Path childPath = breakdown == null ? null : FileBasedPathImpl.get(child);
+            tasks.add(new DirectoryTask(childPath, child, childCanonicalPath));
+          }
+        } else {
+          long length = child.length();
+          if (length > 0 || child.isFile()) {
+            size += length;
+            fileCount++;
+          }
+        }
+      }
+
+      invokeAll(tasks);
+      for (DirectoryTask task : tasks) {
+        DiskUsage usage = task.join();
+        size += usage.size();
+        fileCount += usage.fileCount();
+        directoryCount += usage.directoryCount();
+      }
+
+      DiskUsage usage = new DiskUsage(size, fileCount, directoryCount);
+      if (breakdown != null) {
+        breakdown.put(path, usage);
+      }
+      return usage;
+    }
+  }
+}
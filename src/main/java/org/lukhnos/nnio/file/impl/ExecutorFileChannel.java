@@ -0,0 +1,252 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.channels.AsynchronousFileChannel;
+import org.lukhnos.nnio.channels.CompletionHandler;
+import org.lukhnos.nnio.channels.utils.FileChannelUtils;
+import org.lukhnos.nnio.file.OpenOption;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.StandardOpenOption;
+import org.lukhnos.nnio.file.utils.ExtendedOpenOption;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An AsynchronousFileChannel that runs the positional operations of a FileChannel on an executor.
+ *
+ * Each read, write or lock is one task. A handler is called on the thread that ran its task, with completed() if
+ * the operation returned and failed() if it threw. Reading from or writing to a channel not opened for it throws
+ * right away, as the JDK does. Interrupting a running task, as Future.cancel(true) does, closes the underlying
+ * FileChannel, as it would for any blocked FileChannel operation.
+ */
+public final class ExecutorFileChannel extends AsynchronousFileChannel {
+  private final FileChannel channel;
+  private final ExecutorService executor;
+  private final boolean readable;
+  private final boolean writable;
+  private final ReadCoalescer coalescer;
+
+  private ExecutorFileChannel(FileChannel channel, ExecutorService executor, boolean readable, boolean writable,
+      boolean coalesceReads) {
+    this.channel = channel;
+    this.executor = executor;
+    this.readable = readable;
+    this.writable = writable;
+    this.coalescer = coalesceReads ? new ReadCoalescer(channel, executor) : null;
+  }
+
+  /**
+   * Opens the file with FileChannelUtils. A null executor means a bounded pool of daemon threads shared by the
+   * channels, and kept apart from the fork-join {@link WorkerPool} so that a lock() waiting on another process does
+   * not hold up the parallel file operations. Reads go through a {@link ReadCoalescer} if
+   * {@link ExtendedOpenOption#COALESCE_READS} is given.
+   */
+  public static ExecutorFileChannel open(Path path, Set<? extends OpenOption> options,
+      ExecutorService executor) throws IOException {
+    // The FileChannel of a file opened for writing is also readable, so the access mode is tracked here.
+    boolean writable = options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND);
+    boolean readable = options.contains(StandardOpenOption.READ) || !writable;
+    Set<OpenOption> fileOptions = new HashSet<OpenOption>(options);
+    boolean coalesceReads = fileOptions.remove(ExtendedOpenOption.COALESCE_READS);
+    FileChannel channel = FileChannelUtils.open(path, fileOptions);
+    return new ExecutorFileChannel(channel, executor == null ? DefaultExecutor.EXECUTOR : executor, readable, writable,
+        coalesceReads);
+  }
+
+  @Override
+  public boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  @Override
+  public void force(boolean metaData) throws IOException {
+    channel.force(metaData);
+  }
+
+  @Override
+  public long size() throws IOException {
+    return channel.size();
+  }
+
+  @Override
+  public AsynchronousFileChannel truncate(long size) throws IOException {
+    channel.truncate(size);
+    return this;
+  }
+
+  @Override
+  public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+    return channel.tryLock(position, size, shared);
+  }
+
+  @Override
+  public <A> void lock(long position, long size, boolean shared, A attachment,
+      CompletionHandler<FileLock, ? super A> handler) {
+    execute(lockOperation(position, size, shared), attachment, handler);
+  }
+
+  @Override
+  public Future<FileLock> lock(long position, long size, boolean shared) {
+    return executor.submit(lockOperation(position, size, shared));
+  }
+
+  @Override
+  public <A> void read(ByteBuffer dst, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+    if (coalescer != null) {
+      checkRead(dst, position);
+      coalescer.read(dst, position, attachment, handler);
+    } else {
+      execute(readOperation(dst, position), attachment, handler);
+    }
+  }
+
+  @Override
+  public Future<Integer> read(ByteBuffer dst, long position) {
+    if (coalescer != null) {
+      checkRead(dst, position);
+      return coalescer.read(dst, position);
+    }
+    return executor.submit(readOperation(dst, position));
+  }
+
+  @Override
+  public <A> void write(ByteBuffer src, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+    execute(writeOperation(src, position), attachment, handler);
+  }
+
+  @Override
+  public Future<Integer> write(ByteBuffer src, long position) {
+    return executor.submit(writeOperation(src, position));
+  }
+
+  private void checkRead(ByteBuffer dst, long position) {
+    if (position < 0) {
+      throw new IllegalArgumentException("Negative position");
+    }
+    if (!readable) {
+      throw new NonReadableChannelException();
+    }
+    if (dst.isReadOnly()) {
+      throw new IllegalArgumentException("Read-only buffer");
+    }
+  }
+
+  private Callable<Integer> readOperation(final ByteBuffer dst, final long position) {
+    checkRead(dst, position);
+    return new Callable<Integer>() {
+      @Override
+      public Integer call() throws IOException {
+        return channel.read(dst, position);
+      }
+    };
+  }
+
+  private Callable<Integer> writeOperation(final ByteBuffer src, final long position) {
+    if (position < 0) {
+      throw new IllegalArgumentException("Negative position");
+    }
+    if (!writable) {
+      throw new NonWritableChannelException();
+    }
+    return new Callable<Integer>() {
+      @Override
+      public Integer call() throws IOException {
+        return channel.write(src, position);
+      }
+    };
+  }
+
+  private Callable<FileLock> lockOperation(final long position, final long size, final boolean shared) {
+    if (position < 0 || size < 0) {
+      throw new IllegalArgumentException("Negative position or size");
+    }
+    if (shared && !readable) {
+      throw new NonReadableChannelException();
+    }
+    if (!shared && !writable) {
+      throw new NonWritableChannelException();
+    }
+    return new Callable<FileLock>() {
+      @Override
+      public FileLock call() throws IOException {
+        return channel.lock(position, size, shared);
+      }
+    };
+  }
+
+  private <V, A> void execute(final Callable<V> operation, final A attachment,
+      final CompletionHandler<V, ? super A> handler) {
+    if (handler == null) {
+      throw new NullPointerException("handler");
+    }
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        V result;
+        try {
+          result = operation.call();
+        } catch (Throwable t) {
+          handler.failed(t, attachment);
+          return;
+        }
+        handler.completed(result, attachment);
+      }
+    });
+  }
+
+  private static class DefaultExecutor {
+    static final ExecutorService EXECUTOR;
+
+    static {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(WorkerPool.DEFAULT_PARALLELISM,
+          WorkerPool.DEFAULT_PARALLELISM, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread thread = new Thread(r, "nnio-async-" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+      executor.allowCoreThreadTimeOut(true);
+      EXECUTOR = executor;
+    }
+  }
+}
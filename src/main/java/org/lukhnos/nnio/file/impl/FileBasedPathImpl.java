@@ -27,17 +27,27 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.NoSuchFileException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * A Path implementation with File.
+ *
+ * The name components are found once, when first needed, and kept as offsets into the path string, so that the
+ * lexical operations only allocate the strings and paths they return.
  */
 public class FileBasedPathImpl implements Path {
+  private static final char SEPARATOR = File.separatorChar;
+
   private final File file;
 
+  // Set by toCanonicalFile().
+  private volatile File canonicalFile;
+
+  // Set by offsets(): the length of the root, followed by the start of each name.
+  private volatile int[] offsets;
+
   FileBasedPathImpl(File file) {
     this.file = file;
   }
@@ -75,33 +85,58 @@ public class FileBasedPathImpl implements Path {
 
   @Override
   public boolean endsWith(Path path) {
-    throw new UnsupportedOperationException();
+    FileBasedPathImpl other = from(path);
+    if (other.isAbsolute()) {
+      return equals(other);
+    }
+
+    int count = getNameCount();
+    int otherCount = other.getNameCount();
+    if (otherCount > count || (other.isEmpty() && !isEmpty())) {
+      return false;
+    }
+    for (int i = 0; i < otherCount; i++) {
+      if (!nameEquals(count - otherCount + i, other, i)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public boolean endsWith(String path) {
-    throw new UnsupportedOperationException();
+    return endsWith(get(path));
   }
 
   /**
-   * Equality relies on getCanonicalFile() and may not return true in some edge cases.
+   * Equality is lexical, as in NIO.2, and does not touch the file system: two paths are equal if their File forms are,
+   * which compares the separator-normalized path strings by the platform's case rules. Use
+   * {@link org.lukhnos.nnio.file.Files#isSameFile(Path, Path)} to tell if two paths locate the same file.
    */
   @Override
   public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
     if (obj instanceof Path) {
-      Path other = (Path) obj;
-      try {
-        return file.getCanonicalFile().equals(other.toFile().getCanonicalFile());
-      } catch (IOException e) {
-        return file.toString().equals(other.toFile().toString());
-      }
+      return file.equals(((Path) obj).toFile());
     }
     return false;
   }
 
+  /**
+   * Returns null for a root.
+   */
   @Override
   public Path getFileName() {
-    return FileBasedPathImpl.get(new File(file.getName()));
+    int count = getNameCount();
+    if (count == 0) {
+      return null;
+    }
+    if (count == 1 && rootLength() == 0) {
+      return this;
+    }
+    return getName(count - 1);
   }
 
   @Override
@@ -111,24 +146,45 @@ public class FileBasedPathImpl implements Path {
 
   @Override
   public Path getName(int index) {
-    throw new UnsupportedOperationException();
+    return subpath(index, index + 1);
   }
 
   @Override
   public int getNameCount() {
-    throw new UnsupportedOperationException();
+    return offsets().length - 1;
   }
 
+  /**
+   * The parent is found lexically, as in NIO.2. Returns null if the path has no parent, such as a root or a relative
+   * path with a single name.
+   */
   @Override
   public Path getParent() {
-    return new FileBasedPathImpl(new File(file.getAbsoluteFile().getParent()));
+    int count = getNameCount();
+    if (count == 0 || (count == 1 && rootLength() == 0)) {
+      return null;
+    }
+    if (count == 1) {
+      return getRoot();
+    }
+    return new FileBasedPathImpl(new File(file.getPath().substring(0, nameEnd(count - 2))));
   }
 
+  /**
+   * Returns null for a relative path.
+   */
   @Override
   public Path getRoot() {
-    throw new UnsupportedOperationException();
+    int rootLength = rootLength();
+    if (rootLength == 0) {
+      return null;
+    }
+    return new FileBasedPathImpl(new File(file.getPath().substring(0, rootLength)));
   }
 
+  /**
+   * Consistent with {@link #equals(Object)}.
+   */
   @Override
   public int hashCode() {
     return file.hashCode();
@@ -140,27 +196,75 @@ public class FileBasedPathImpl implements Path {
   }
 
   /**
-   * This evaluates file.listFiles() eagerly, and so is not fit for iterating large directories.
+   * Iterates over the names, as in NIO.2. The root is not included.
    */
   @Override
   public Iterator<Path> iterator() {
-    List<Path> paths = new ArrayList<Path>();
+    final int count = getNameCount();
+    return new Iterator<Path>() {
+      private int index;
 
-    File f = file;
-    while (f != null) {
-      String p = f.getParent();
-      if (p == null) {
-        break;
+      @Override
+      public boolean hasNext() {
+        return index < count;
       }
-      paths.add(0, new FileBasedPathImpl(new File(f.getName())));
-      f = new File(p);
-    }
-    return paths.iterator();
+
+      @Override
+      public Path next() {
+        if (index >= count) {
+          throw new NoSuchElementException();
+        }
+        return getName(index++);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
   }
 
+  /**
+   * Removes the "." names, and the ".." names along with the names before them. Leading ".." names of a relative path
+   * are kept, and those right after a root are dropped. Returns this path if there is nothing to remove.
+   */
   @Override
   public Path normalize() {
-    throw new UnsupportedOperationException();
+    int count = getNameCount();
+    int rootLength = rootLength();
+    String path = file.getPath();
+    int[] kept = new int[count];
+    int keptCount = 0;
+    boolean changed = false;
+    for (int i = 0; i < count; i++) {
+      if (nameIs(i, ".")) {
+        changed = true;
+      } else if (nameIs(i, "..")) {
+        if (keptCount > 0 && !nameIs(kept[keptCount - 1], "..")) {
+          keptCount--;
+          changed = true;
+        } else if (rootLength > 0) {
+          changed = true;
+        } else {
+          kept[keptCount++] = i;
+        }
+      } else {
+        kept[keptCount++] = i;
+      }
+    }
+    if (!changed) {
+      return this;
+    }
+
+    StringBuilder sb = new StringBuilder(path.length());
+    sb.append(path, 0, rootLength);
+    for (int i = 0; i < keptCount; i++) {
+      if (i > 0) {
+        sb.append(SEPARATOR);
+      }
+      sb.append(path, nameStart(kept[i]), nameEnd(kept[i]));
+    }
+    return new FileBasedPathImpl(new File(sb.toString()));
   }
 
   @Override
@@ -173,9 +277,47 @@ public class FileBasedPathImpl implements Path {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * The relative path from this path to the given one, found lexically.
+   *
+   * @throws IllegalArgumentException if only one of the paths has a root, or if the roots differ.
+   */
   @Override
   public Path relativize(Path path) {
-    throw new UnsupportedOperationException();
+    FileBasedPathImpl other = from(path);
+    String path1 = file.getPath();
+    String path2 = other.file.getPath();
+    if (!path1.regionMatches(0, path2, 0, rootLength()) || rootLength() != other.rootLength()) {
+      throw new IllegalArgumentException("'other' is different type of Path");
+    }
+    if (equals(other)) {
+      return new FileBasedPathImpl(new File(""));
+    }
+    if (isEmpty()) {
+      return other;
+    }
+
+    int count = getNameCount();
+    int otherCount = other.getNameCount();
+    int common = 0;
+    while (common < count && common < otherCount && nameEquals(common, other, common)) {
+      common++;
+    }
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = common; i < count; i++) {
+      if (sb.length() > 0) {
+        sb.append(SEPARATOR);
+      }
+      sb.append("..");
+    }
+    if (common < otherCount && !other.isEmpty()) {
+      if (sb.length() > 0) {
+        sb.append(SEPARATOR);
+      }
+      sb.append(path2, other.nameStart(common), path2.length());
+    }
+    return new FileBasedPathImpl(new File(sb.toString()));
   }
 
   @Override
@@ -207,27 +349,51 @@ public class FileBasedPathImpl implements Path {
 
   @Override
   public Path resolveSibling(Path path) {
-    throw new UnsupportedOperationException();
+    Path parent = getParent();
+    return parent == null ? path : parent.resolve(path);
   }
 
   @Override
   public Path resolveSibling(String path) {
-    throw new UnsupportedOperationException();
+    Path parent = getParent();
+    return parent == null ? get(path) : parent.resolve(path);
   }
 
   @Override
   public boolean startsWith(Path path) {
-    throw new UnsupportedOperationException();
+    FileBasedPathImpl other = from(path);
+    int rootLength = rootLength();
+    if (rootLength != other.rootLength() || !file.getPath().regionMatches(0, other.file.getPath(), 0, rootLength)) {
+      return false;
+    }
+
+    int otherCount = other.getNameCount();
+    if (otherCount > getNameCount() || (other.isEmpty() && !isEmpty())) {
+      return false;
+    }
+    for (int i = 0; i < otherCount; i++) {
+      if (!nameEquals(i, other, i)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public boolean startsWith(String path) {
-    throw new UnsupportedOperationException();
+    return startsWith(get(path));
   }
 
+  /**
+   * @throws IllegalArgumentException if the indices are out of range or endIndex is not greater than beginIndex.
+   */
   @Override
   public Path subpath(int beginIndex, int endIndex) {
-    throw new UnsupportedOperationException();
+    int count = getNameCount();
+    if (beginIndex < 0 || beginIndex >= count || endIndex > count || beginIndex >= endIndex) {
+      throw new IllegalArgumentException("Invalid subpath [" + beginIndex + ", " + endIndex + ") of " + this);
+    }
+    return new FileBasedPathImpl(new File(file.getPath().substring(nameStart(beginIndex), nameEnd(endIndex - 1))));
   }
 
   @Override
@@ -240,11 +406,25 @@ public class FileBasedPathImpl implements Path {
     return file;
   }
 
+  /**
+   * Returns the canonical form of the path, which is computed once and then kept, so that later changes to symbolic
+   * links along the path are not seen.
+   */
+  public File toCanonicalFile() throws IOException {
+    File canonical = canonicalFile;
+    if (canonical == null) {
+      canonical = file.getCanonicalFile();
+      canonicalFile = canonical;
+    }
+    return canonical;
+  }
+
   @Override
   public Path toRealPath(LinkOption... options) throws IOException {
     File f;
     if (Arrays.asList(options).contains(LinkOption.NOFOLLOW_LINKS)) {
-      f = file.getAbsoluteFile();
+      // Only remove the "." and ".." names, now that equality does not see through them.
+      f = new File(file.getAbsoluteFile().toURI().normalize());
     } else {
       f = file.getCanonicalFile();
     }
@@ -265,4 +445,93 @@ public class FileBasedPathImpl implements Path {
   public URI toUri() {
     return file.toURI();
   }
+
+  private static FileBasedPathImpl from(Path path) {
+    if (path instanceof FileBasedPathImpl) {
+      return (FileBasedPathImpl) path;
+    }
+    return new FileBasedPathImpl(path.toFile());
+  }
+
+  private boolean isEmpty() {
+    return file.getPath().isEmpty();
+  }
+
+  private int rootLength() {
+    return offsets()[0];
+  }
+
+  private int nameStart(int index) {
+    return offsets()[index + 1];
+  }
+
+  private int nameEnd(int index) {
+    int[] offsets = offsets();
+    return index + 2 < offsets.length ? offsets[index + 2] - 1 : file.getPath().length();
+  }
+
+  private boolean nameIs(int index, String name) {
+    int start = nameStart(index);
+    return nameEnd(index) - start == name.length() && file.getPath().startsWith(name, start);
+  }
+
+  private boolean nameEquals(int index, FileBasedPathImpl other, int otherIndex) {
+    int start = nameStart(index);
+    int length = nameEnd(index) - start;
+    int otherStart = other.nameStart(otherIndex);
+    return length == other.nameEnd(otherIndex) - otherStart
+        && file.getPath().regionMatches(SEPARATOR == '\\', start, other.file.getPath(), otherStart, length);
+  }
+
+  /**
+   * Finds the root and the names. File has already removed duplicate and trailing separators, so the names are
+   * exactly what lies between the separators after the root. The empty path has a single empty name.
+   */
+  private int[] offsets() {
+    int[] result = offsets;
+    if (result != null) {
+      return result;
+    }
+
+    String path = file.getPath();
+    int rootLength = findRootLength();
+    int count = path.isEmpty() ? 1 : 0;
+    if (rootLength < path.length()) {
+      count = 1;
+      for (int i = rootLength; i < path.length(); i++) {
+        if (path.charAt(i) == SEPARATOR) {
+          count++;
+        }
+      }
+    }
+
+    result = new int[count + 1];
+    result[0] = rootLength;
+    if (count > 0) {
+      result[1] = rootLength;
+      int n = 2;
+      for (int i = rootLength; i < path.length(); i++) {
+        if (path.charAt(i) == SEPARATOR) {
+          result[n++] = i + 1;
+        }
+      }
+    }
+    offsets = result;
+    return result;
+  }
+
+  private int findRootLength() {
+    String path = file.getPath();
+    if (SEPARATOR == '/') {
+      return path.startsWith("/") ? 1 : 0;
+    }
+
+    // Drive letters and UNC prefixes are left to File to recognize.
+    File top = file;
+    File parent;
+    while ((parent = top.getParentFile()) != null) {
+      top = parent;
+    }
+    return top.getName().isEmpty() ? top.getPath().length() : 0;
+  }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.AtomicMoveNotSupportedException;
+import org.lukhnos.nnio.file.FileAlreadyExistsException;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.Path;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Moves a file or directory with java.io.File.
+ *
+ * A move is a rename if possible. An existing target is only deleted after a rename has failed, since File.renameTo
+ * replaces a file on some platforms but not on others, such as Windows. If the rename still fails, a regular file is
+ * copied into a temporary file next to the target, which is then renamed into place before the source is deleted.
+ */
+public class FileMover {
+  private static final FileMover INSTANCE = new FileMover();
+
+  FileMover() {
+  }
+
+  public static void move(Path source, Path target, boolean replaceExisting, boolean atomicMove) throws IOException {
+    INSTANCE.moveFile(source, target, replaceExisting, atomicMove);
+  }
+
+  void moveFile(Path sourcePath, Path targetPath, boolean replaceExisting, boolean atomicMove) throws IOException {
+    if (!replaceExisting && Files.exists(targetPath)) {
+      throw new FileAlreadyExistsException("file already exists: " + targetPath);
+    }
+
+    File sourceFile = sourcePath.toFile();
+    File targetFile = targetPath.toFile();
+    String source = sourceFile.toString();
+    String target = targetFile.toString();
+    if (renameSource(sourceFile, targetFile)) {
+      return;
+    }
+
+    if (atomicMove) {
+      throw new AtomicMoveNotSupportedException(source, target, "rename failed");
+    }
+
+    if (replaceExisting && targetFile.exists()) {
+      Files.delete(targetPath);
+      if (renameSource(sourceFile, targetFile)) {
+        return;
+      }
+    }
+
+    if (!sourceFile.isFile()) {
+      throw new IOException("Move from " + source + " to " + target + " failed");
+    }
+
+    File tempFile = File.createTempFile(".nnio-move", ".tmp", targetFile.getAbsoluteFile().getParentFile());
+    try {
+      FileTreeCopier.copyFile(sourceFile, tempFile, true, true);
+      if (!tempFile.renameTo(targetFile)) {
+        throw new IOException("Move from " + source + " to " + target + " failed");
+      }
+    } catch (IOException e) {
+      tempFile.delete();
+      throw e;
+    }
+
+    if (!sourceFile.delete()) {
+      throw new IOException("Move from " + source + " to " + target + " copied the file, but the source cannot be "
+          + "deleted");
+    }
+  }
+
+  /**
+   * Overridden by tests to make the rename fail, so that the fallbacks are taken.
+   */
+  boolean renameSource(File sourceFile, File targetFile) {
+    return sourceFile.renameTo(targetFile);
+  }
+}
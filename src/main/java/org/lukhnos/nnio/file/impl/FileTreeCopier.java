@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.AccessDeniedException;
+import org.lukhnos.nnio.file.FileAlreadyExistsException;
+import org.lukhnos.nnio.file.FileSystemException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Copies a directory tree with a fork-join pool.
+ *
+ * Each directory is a task that creates its counterpart, forks its subdirectories and copies its files in small
+ * batches, so that many small files are in flight at the same time. The last modified time of a directory is set
+ * after all its children are copied. Symbolic links to directories are found by comparing canonical paths, and are
+ * neither followed nor copied. Failures do not stop the copy; they are collected and thrown at the end.
+ */
+public final class FileTreeCopier {
+  // Number of files handed to one task. Small enough to spread a flat directory across the pool.
+  private static final int FILE_BATCH_SIZE = 16;
+
+  private final boolean replaceExisting;
+  private final Queue<IOException> failures = new ConcurrentLinkedQueue<IOException>();
+
+  private FileTreeCopier(boolean replaceExisting) {
+    this.replaceExisting = replaceExisting;
+  }
+
+  public static void copy(File source, File target, boolean replaceExisting, ForkJoinPool pool) throws IOException {
+    if (target.exists() && !replaceExisting) {
+      throw new FileAlreadyExistsException("file already exists: " + target);
+    }
+
+    String sourceCanonicalPath = source.getCanonicalPath();
+    String targetCanonicalPath = target.getCanonicalPath();
+    if (targetCanonicalPath.equals(sourceCanonicalPath)
+        || targetCanonicalPath.startsWith(sourceCanonicalPath + File.separator)) {
+      throw new FileSystemException(source.toString(), target.toString(), "Cannot copy a directory into itself");
+    }
+
+    FileTreeCopier copier = new FileTreeCopier(replaceExisting);
+    pool.invoke(copier.new DirectoryTask(source, target, sourceCanonicalPath));
+
+    Iterator<IOException> iter = copier.failures.iterator();
+    if (iter.hasNext()) {
+      IOException first = iter.next();
+      while (iter.hasNext()) {
+        first.addSuppressed(iter.next());
+      }
+      throw first;
+    }
+  }
+
+  /**
+   * Copies a single file with FileChannel.transferFrom. The target is overwritten only if replaceExisting is true.
+   */
+  public static void copyFile(File source, File target, boolean replaceExisting, boolean copyAttributes)
+      throws IOException {
+    if (!replaceExisting && target.exists()) {
+      throw new FileAlreadyExistsException("file already exists: " + target);
+    }
+
+    try (FileChannel srcChannel = new FileInputStream(source).getChannel();
+         FileChannel dstChannel = new FileOutputStream(target).getChannel()) {
+      long alreadyRead = 0;
+      long size = srcChannel.size();
+      while (alreadyRead < size) {
+        long transferred = dstChannel.transferFrom(srcChannel, alreadyRead, size - alreadyRead);
+        if (transferred <= 0) {
+          // The source got shorter.
+          break;
+        }
+        alreadyRead += transferred;
+      }
+    }
+
+    if (copyAttributes) {
+      target.setLastModified(source.lastModified());
+    }
+  }
+
+  private void makeDirectory(File target) throws IOException {
+    if (target.mkdir()) {
+      return;
+    }
+
+    if (target.isDirectory()) {
+      if (!replaceExisting) {
+        throw new FileAlreadyExistsException("file already exists: " + target);
+      }
+      return;
+    }
+
+    if (target.exists()) {
+      if (!replaceExisting) {
+        throw new FileAlreadyExistsException("file already exists: " + target);
+      }
+      if (target.delete() && target.mkdir()) {
+        return;
+      }
+    }
+
+    throw new IOException("Failed creating directory: " + target);
+  }
+
+  private class DirectoryTask extends RecursiveAction {
+    private final File source;
+    private final File target;
+    private final String canonicalPath;
+
+    DirectoryTask(File source, File target, String canonicalPath) {
+      this.source = source;
+      this.target = target;
+      this.canonicalPath = canonicalPath;
+    }
+
+    @Override
+    protected void compute() {
+      String[] names = source.list();
+      if (names == null) {
+        failures.add(new AccessDeniedException(source.toString()));
+        return;
+      }
+
+      try {
+        makeDirectory(target);
+      } catch (IOException e) {
+        failures.add(e);
+        return;
+      }
+
+      List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+      List<String> files = new ArrayList<String>();
+      for (String name : names) {
+        File child = new File(source, name);
+        if (child.isDirectory()) {
+          String childCanonicalPath;
+          try {
+            childCanonicalPath = child.getCanonicalPath();
+          } catch (IOException e) {
+            failures.add(e);
+            continue;
+          }
+          if (!FileTreeWalker.isLink(child, childCanonicalPath, canonicalPath)) {
+            tasks.add(new DirectoryTask(child, new File(target, name), childCanonicalPath));
+          }
+        } else {
+          files.add(name);
+          if (files.size() == FILE_BATCH_SIZE) {
+            tasks.add(new FilesTask(source, target, files));
+            files = new ArrayList<String>();
+          }
+        }
+      }
+      if (!files.isEmpty()) {
+        tasks.add(new FilesTask(source, target, files));
+      }
+
+      invokeAll(tasks);
+      target.setLastModified(source.lastModified());
+    }
+  }
+
+  private class FilesTask extends RecursiveAction {
+    private final File sourceDir;
+    private final File targetDir;
+    private final List<String> names;
+
+    FilesTask(File sourceDir, File targetDir, List<String> names) {
+      this.sourceDir = sourceDir;
+      this.targetDir = targetDir;
+      this.names = names;
+    }
+
+    @Override
+    protected void compute() {
+      for (String name : names) {
+        try {
+          copyFile(new File(sourceDir, name), new File(targetDir, name), replaceExisting, true);
+        } catch (IOException e) {
+          failures.add(e);
+        }
+      }
+    }
+  }
+}
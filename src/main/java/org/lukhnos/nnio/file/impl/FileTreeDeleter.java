@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.AccessDeniedException;
+import org.lukhnos.nnio.file.NoSuchFileException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deletes a directory tree bottom-up with a fork-join pool.
+ *
+ * Every entry is first simply deleted, which is the only call made for a file or an empty directory. Only if that
+ * fails is the entry listed as a directory, its children deleted, and the directory deleted again. The names of a
+ * directory are split into batches so that a large, flat directory is spread across the pool. A symbolic link that
+ * cannot be deleted is never followed. Failures do not stop the deletion; they are collected and thrown at the end.
+ */
+public final class FileTreeDeleter {
+  private static final int BATCH_SIZE = 64;
+
+  // Failures beyond this many are counted but not kept.
+  private static final int MAX_REPORTED_FAILURES = 100;
+
+  private final Queue<IOException> failures = new ConcurrentLinkedQueue<IOException>();
+  private final AtomicInteger failureCount = new AtomicInteger();
+
+  private FileTreeDeleter() {
+  }
+
+  public static void delete(File root, ForkJoinPool pool) throws IOException {
+    if (root.delete()) {
+      return;
+    }
+
+    if (!root.exists()) {
+      throw new NoSuchFileException("no such file: " + root);
+    }
+
+    FileTreeDeleter deleter = new FileTreeDeleter();
+    if (deleter.checkNotSymbolicLink(root)) {
+      pool.invoke(deleter.new DirectoryTask(root));
+    }
+
+    int count = deleter.failureCount.get();
+    if (count > 0) {
+      IOException e = new IOException("Could not delete " + count + " entries under " + root);
+      for (IOException failure : deleter.failures) {
+        e.addSuppressed(failure);
+      }
+      throw e;
+    }
+  }
+
+  private void fail(IOException e) {
+    if (failureCount.incrementAndGet() <= MAX_REPORTED_FAILURES) {
+      failures.add(e);
+    }
+  }
+
+  /**
+   * Returns false, and records a failure, if the entry is a symbolic link. Only called for entries that could not be
+   * deleted, to keep a stuck link from leading the deletion elsewhere.
+   */
+  private boolean checkNotSymbolicLink(File file) {
+    try {
+      File parent = file.getAbsoluteFile().getParentFile();
+      if (parent != null) {
+        File entry = new File(parent.getCanonicalFile(), file.getName());
+        if (!entry.getCanonicalFile().equals(entry.getAbsoluteFile())) {
+          fail(new IOException("Could not delete symbolic link: " + file));
+          return false;
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      fail(e);
+      return false;
+    }
+  }
+
+  private class DirectoryTask extends RecursiveAction {
+    private final File dir;
+
+    DirectoryTask(File dir) {
+      this.dir = dir;
+    }
+
+    @Override
+    protected void compute() {
+      String[] names = dir.list();
+      if (names == null) {
+        if (dir.exists()) {
+          fail(new AccessDeniedException(dir.toString()));
+        }
+        return;
+      }
+
+      List<BatchTask> tasks = new ArrayList<BatchTask>();
+      for (int from = 0; from < names.length; from += BATCH_SIZE) {
+        tasks.add(new BatchTask(dir, names, from, Math.min(names.length, from + BATCH_SIZE)));
+      }
+      invokeAll(tasks);
+
+      if (!dir.delete() && dir.exists()) {
+        fail(new IOException("Could not delete path: " + dir));
+      }
+    }
+  }
+
+  private class BatchTask extends RecursiveAction {
+    private final File dir;
+    private final String[] names;
+    private final int from;
+    private final int to;
+
+    BatchTask(File dir, String[] names, int from, int to) {
+      this.dir = dir;
+      this.names = names;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      List<DirectoryTask> subdirs = new ArrayList<DirectoryTask>();
+      for (int i = from; i < to; i++) {
+        File file = new File(dir, names[i]);
+        if (!file.delete() && checkNotSymbolicLink(file)) {
+          subdirs.add(new DirectoryTask(file));
+        }
+      }
+      invokeAll(subdirs);
+    }
+  }
+}
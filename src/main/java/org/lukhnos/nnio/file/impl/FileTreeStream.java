@@ -0,0 +1,230 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.AccessDeniedException;
+import org.lukhnos.nnio.file.DirectoryIteratorException;
+import org.lukhnos.nnio.file.DirectoryStream;
+import org.lukhnos.nnio.file.FileSystemLoopException;
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
+import org.lukhnos.nnio.file.utils.AttributeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A lazy, depth-first, pre-order stream of the entries of a file tree, starting with the tree's root.
+ *
+ * A directory is only listed when the iterator moves past it, and only if the descend filter accepts it, so the
+ * memory used is that of the listings along the current path. Entries that disappear between the listing and the
+ * reading of their attributes are skipped. I/O errors, including a {@link FileSystemLoopException} when links are
+ * followed, are thrown by the iterator as a {@link DirectoryIteratorException}.
+ */
+public final class FileTreeStream implements DirectoryStream<Path> {
+  private final Path start;
+  private final int maxDepth;
+  private final boolean followLinks;
+  private final AttributeFilter matcher;
+  private final AttributeFilter descendFilter;
+  private boolean iteratorReturned;
+  private volatile boolean closed;
+
+  private FileTreeStream(Path start, int maxDepth, boolean followLinks, AttributeFilter matcher,
+      AttributeFilter descendFilter) {
+    this.start = start;
+    this.maxDepth = maxDepth;
+    this.followLinks = followLinks;
+    this.matcher = matcher;
+    this.descendFilter = descendFilter;
+  }
+
+  /**
+   * Either filter may be null, which accepts everything.
+   *
+   * @throws NoSuchFileException if start does not exist.
+   * @throws IllegalArgumentException if maxDepth is negative.
+   */
+  public static FileTreeStream open(Path start, int maxDepth, boolean followLinks, AttributeFilter matcher,
+      AttributeFilter descendFilter) throws IOException {
+    if (maxDepth < 0) {
+      throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+    }
+    if (!start.toFile().exists()) {
+      throw new NoSuchFileException(start.toString());
+    }
+    return new FileTreeStream(start, maxDepth, followLinks, matcher, descendFilter);
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+  }
+
+  /**
+   * Can only be called once.
+   *
+   * @throws IllegalStateException if the stream is closed or the iterator has already been returned.
+   */
+  @Override
+  public synchronized Iterator<Path> iterator() {
+    if (closed) {
+      throw new IllegalStateException("Stream is closed");
+    }
+    if (iteratorReturned) {
+      throw new IllegalStateException("Iterator already obtained");
+    }
+    iteratorReturned = true;
+    return new TreeIterator();
+  }
+
+  private static class Frame {
+    final File dir;
+    final String canonicalPath;
+    final String[] names;
+    final int depth;
+    int index;
+
+    Frame(File dir, String canonicalPath, String[] names, int depth) {
+      this.dir = dir;
+      this.canonicalPath = canonicalPath;
+      this.names = names;
+      this.depth = depth;
+    }
+  }
+
+  private class TreeIterator implements Iterator<Path> {
+    private final Deque<Frame> stack = new ArrayDeque<Frame>();
+    private boolean started;
+    private Path next;
+
+    // The directory last considered, to be listed when the iterator moves on.
+    private File pendingDir;
+    private String pendingCanonicalPath;
+    private int pendingDepth;
+
+    @Override
+    public boolean hasNext() {
+      if (next != null) {
+        return true;
+      }
+
+      try {
+        if (!started) {
+          started = true;
+          File startFile = start.toFile();
+          File parent = startFile.getAbsoluteFile().getParentFile();
+          consider(start, startFile, 0, parent == null ? null : parent.getCanonicalPath());
+          if (next != null) {
+            return true;
+          }
+        }
+
+        while (!closed) {
+          if (pendingDir != null) {
+            expandPending();
+          }
+          Frame top = stack.peek();
+          if (top == null) {
+            return false;
+          }
+          if (top.index == top.names.length) {
+            stack.pop();
+            continue;
+          }
+
+          File child = new File(top.dir, top.names[top.index++]);
+          consider(FileBasedPathImpl.get(child), child, top.depth + 1, top.canonicalPath);
+          if (next != null) {
+            return true;
+          }
+        }
+      } catch (IOException e) {
+        throw new DirectoryIteratorException(e);
+      }
+      return false;
+    }
+
+    @Override
+    public Path next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Path result = next;
+      next = null;
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Sets next if the matcher accepts the entry, and pendingDir if it is a directory to be walked into.
+     */
+    private void consider(Path path, File file, int depth, String parentCanonicalPath) throws IOException {
+      BasicFileAttributes attrs = new BasicFileAttributes(file);
+      if (!attrs.isDirectory() && !attrs.isRegularFile() && !attrs.isOther()) {
+        return;
+      }
+
+      boolean expand = false;
+      String canonicalPath = null;
+      if (attrs.isDirectory()) {
+        canonicalPath = file.getCanonicalPath();
+        boolean isLink = FileTreeWalker.isLink(file, canonicalPath, parentCanonicalPath);
+        if (isLink && !followLinks) {
+          attrs = FileTreeWalker.linkAttributes(attrs);
+        } else {
+          if (isLink) {
+            for (Frame ancestor : stack) {
+              if (ancestor.canonicalPath.equals(canonicalPath)) {
+                throw new FileSystemLoopException(path.toString());
+              }
+            }
+          }
+          expand = depth < maxDepth && (descendFilter == null || descendFilter.accept(path, attrs));
+        }
+      }
+
+      if (matcher == null || matcher.accept(path, attrs)) {
+        next = path;
+      }
+      if (expand) {
+        pendingDir = file;
+        pendingCanonicalPath = canonicalPath;
+        pendingDepth = depth;
+      }
+    }
+
+    private void expandPending() throws IOException {
+      File dir = pendingDir;
+      pendingDir = null;
+      String[] names = dir.list();
+      if (names == null) {
+        throw new AccessDeniedException(dir.toString());
+      }
+      stack.push(new Frame(dir, pendingCanonicalPath, names, pendingDepth));
+    }
+  }
+}
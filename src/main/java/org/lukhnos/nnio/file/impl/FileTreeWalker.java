@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.AccessDeniedException;
+import org.lukhnos.nnio.file.FileSystemLoopException;
+import org.lukhnos.nnio.file.FileVisitResult;
+import org.lukhnos.nnio.file.FileVisitor;
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Walks a file tree with an explicit stack, so that the depth of the tree is not limited by the Java stack.
+ *
+ * The visitor is called as by {@link java.nio.file.Files#walkFileTree(java.nio.file.Path, java.util.Set, int,
+ * java.nio.file.FileVisitor)}, and every FileVisitResult is honored. Each entry costs one attribute snapshot, which is
+ * passed to the visitor. Symbolic links to directories are found by comparing canonical paths, so each directory
+ * costs one canonicalization as well. Unless links are followed, such a link is visited as a file with
+ * {@link BasicFileAttributes#isSymbolicLink()} set. If they are followed, a link back to an ancestor is reported to
+ * visitFileFailed with a {@link FileSystemLoopException}.
+ */
+public final class FileTreeWalker {
+  private final FileVisitor<? super Path> visitor;
+  private final boolean followLinks;
+  private final int maxDepth;
+  private final Deque<DirectoryFrame> stack = new ArrayDeque<DirectoryFrame>();
+
+  private FileTreeWalker(FileVisitor<? super Path> visitor, boolean followLinks, int maxDepth) {
+    this.visitor = visitor;
+    this.followLinks = followLinks;
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * @throws IllegalArgumentException if maxDepth is negative.
+   */
+  public static void walk(Path start, boolean followLinks, int maxDepth, FileVisitor<? super Path> visitor) throws
+      IOException {
+    if (maxDepth < 0) {
+      throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+    }
+    new FileTreeWalker(visitor, followLinks, maxDepth).walk(start);
+  }
+
+  private void walk(Path start) throws IOException {
+    File startFile = start.toFile();
+    File parent = startFile.getAbsoluteFile().getParentFile();
+    String parentCanonicalPath = parent == null ? null : parent.getCanonicalPath();
+    if (visit(start, startFile, 0, parentCanonicalPath) == FileVisitResult.TERMINATE) {
+      return;
+    }
+
+    while (!stack.isEmpty()) {
+      DirectoryFrame top = stack.peek();
+      if (top.skipRemaining || top.index == top.names.length) {
+        stack.pop();
+        FileVisitResult result = visitor.postVisitDirectory(top.path, null);
+        if (result == FileVisitResult.TERMINATE) {
+          return;
+        }
+        if (result == FileVisitResult.SKIP_SIBLINGS && !stack.isEmpty()) {
+          stack.peek().skipRemaining = true;
+        }
+        continue;
+      }
+
+      File child = new File(top.file, top.names[top.index++]);
+      FileVisitResult result = visit(FileBasedPathImpl.get(child), child, top.depth + 1, top.canonicalPath);
+      if (result == FileVisitResult.TERMINATE) {
+        return;
+      }
+      if (result == FileVisitResult.SKIP_SIBLINGS) {
+        top.skipRemaining = true;
+      }
+    }
+  }
+
+  /**
+   * Visits an entry, and pushes a frame if it is a directory to be walked into. Returns the result of the visitor,
+   * with SKIP_SUBTREE turned into CONTINUE.
+   */
+  private FileVisitResult visit(Path path, File file, int depth, String parentCanonicalPath) throws IOException {
+    BasicFileAttributes attrs = new BasicFileAttributes(file);
+    if (!attrs.isDirectory() && !attrs.isRegularFile() && !attrs.isOther()) {
+      return visitor.visitFileFailed(path, new NoSuchFileException(path.toString()));
+    }
+    if (!attrs.isDirectory() || depth >= maxDepth) {
+      return continueIfSkipSubtree(visitor.visitFile(path, attrs));
+    }
+
+    String canonicalPath;
+    try {
+      canonicalPath = file.getCanonicalPath();
+    } catch (IOException e) {
+      return visitor.visitFileFailed(path, e);
+    }
+
+    boolean isLink = isLink(file, canonicalPath, parentCanonicalPath);
+    if (isLink && !followLinks) {
+      return continueIfSkipSubtree(visitor.visitFile(path, linkAttributes(attrs)));
+    }
+    if (isLink) {
+      for (DirectoryFrame ancestor : stack) {
+        if (ancestor.canonicalPath.equals(canonicalPath)) {
+          return visitor.visitFileFailed(path, new FileSystemLoopException(path.toString()));
+        }
+      }
+    }
+
+    String[] names = file.list();
+    if (names == null) {
+      return visitor.visitFileFailed(path, new AccessDeniedException(path.toString()));
+    }
+
+    FileVisitResult result = visitor.preVisitDirectory(path, attrs);
+    if (result == FileVisitResult.CONTINUE) {
+      stack.push(new DirectoryFrame(path, file, canonicalPath, names, depth));
+    }
+    return continueIfSkipSubtree(result);
+  }
+
+  /**
+   * Tells if a directory is reached through a symbolic link, given its canonical path and that of its parent. The
+   * parent path is null for a root.
+   */
+  static boolean isLink(File dir, String canonicalPath, String parentCanonicalPath) {
+    return parentCanonicalPath != null
+        && !canonicalPath.equals(new File(parentCanonicalPath, dir.getName()).getPath());
+  }
+
+  /**
+   * Returns the attributes that a symbolic link to a directory is visited with when links are not followed.
+   */
+  static BasicFileAttributes linkAttributes(BasicFileAttributes attrs) {
+    return new BasicFileAttributes(attrs.fileKey(), attrs.creationTime(), attrs.lastAccessTime(),
+        attrs.lastModifiedTime(), 0, false, false, true, false);
+  }
+
+  private static FileVisitResult continueIfSkipSubtree(FileVisitResult result) {
+    return result == FileVisitResult.SKIP_SUBTREE ? FileVisitResult.CONTINUE : result;
+  }
+
+  private static class DirectoryFrame {
+    final Path path;
+    final File file;
+    final String canonicalPath;
+    final String[] names;
+    final int depth;
+    int index;
+    boolean skipRemaining;
+
+    DirectoryFrame(Path path, File file, String canonicalPath, String[] names, int depth) {
+      this.path = path;
+      this.file = file;
+      this.canonicalPath = canonicalPath;
+      this.names = names;
+      this.depth = depth;
+    }
+  }
+}
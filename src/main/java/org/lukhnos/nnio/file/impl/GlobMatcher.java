@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.PathMatcher;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled "glob:" or "regex:" pattern, as taken by {@link java.nio.file.FileSystem#getPathMatcher(String)}.
+ *
+ * The glob syntax is that of NIO.2: * and ? do not cross the name separator, ** does, [...] and [!...] are character
+ * classes, {a,b} is a group of alternatives, and \ escapes the next character. Globs that are a literal, *, *.ext or
+ * prefix* are matched without a regex. Compiled matchers are kept in a small LRU cache, so that scanning many
+ * directories with the same pattern compiles it once.
+ */
+public abstract class GlobMatcher implements PathMatcher {
+  static final int CACHE_SIZE = 256;
+
+  private static final char SEPARATOR = File.separatorChar;
+
+  private static final String SEPARATOR_IN_CLASS = SEPARATOR == '\\' ? "\\\\" : String.valueOf(SEPARATOR);
+
+  private static final String NOT_SEPARATOR = "[^" + SEPARATOR_IN_CLASS + "]";
+
+  private static final String GLOB_SPECIAL_CHARS = "*?[{\\";
+
+  private static final String REGEX_SPECIAL_CHARS = "\\.[]{}()*+-?^$|";
+
+  private static final Map<String, GlobMatcher> CACHE = new LinkedHashMap<String, GlobMatcher>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, GlobMatcher> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+
+  /**
+   * Returns the matcher of a "glob:" or "regex:" prefixed pattern.
+   *
+   * @throws IllegalArgumentException if the syntax prefix is missing
+   * @throws UnsupportedOperationException if the syntax is neither glob nor regex
+   * @throws PatternSyntaxException if the pattern is invalid
+   */
+  public static GlobMatcher get(String syntaxAndPattern) {
+    synchronized (CACHE) {
+      GlobMatcher matcher = CACHE.get(syntaxAndPattern);
+      if (matcher != null) {
+        return matcher;
+      }
+    }
+
+    GlobMatcher matcher = compile(syntaxAndPattern);
+    synchronized (CACHE) {
+      CACHE.put(syntaxAndPattern, matcher);
+    }
+    return matcher;
+  }
+
+  /**
+   * Returns the matcher of a glob that has no syntax prefix.
+   */
+  public static GlobMatcher forGlob(String glob) {
+    return get("glob:" + glob);
+  }
+
+  private static GlobMatcher compile(String syntaxAndPattern) {
+    int colon = syntaxAndPattern.indexOf(':');
+    if (colon <= 0) {
+      throw new IllegalArgumentException("Pattern must be in the form syntax:pattern: " + syntaxAndPattern);
+    }
+
+    String syntax = syntaxAndPattern.substring(0, colon);
+    String pattern = syntaxAndPattern.substring(colon + 1);
+    if (syntax.equalsIgnoreCase("glob")) {
+      return compileGlob(pattern);
+    } else if (syntax.equalsIgnoreCase("regex")) {
+      return new RegexMatcher(Pattern.compile(pattern));
+    }
+    throw new UnsupportedOperationException("Syntax '" + syntax + "' not recognized");
+  }
+
+  static GlobMatcher compileGlob(String glob) {
+    if (!hasSpecialChars(glob, 0, glob.length())) {
+      return new LiteralMatcher(glob);
+    }
+
+    int length = glob.length();
+    if (glob.charAt(0) == '*' && !hasSpecialChars(glob, 1, length)) {
+      return new SuffixMatcher(glob.substring(1));
+    }
+    if (glob.charAt(length - 1) == '*' && !hasSpecialChars(glob, 0, length - 1)) {
+      return new PrefixMatcher(glob.substring(0, length - 1));
+    }
+    return new RegexMatcher(Pattern.compile(toRegex(glob)));
+  }
+
+  private static boolean hasSpecialChars(String glob, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (GLOB_SPECIAL_CHARS.indexOf(glob.charAt(i)) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static String toRegex(String glob) {
+    StringBuilder sb = new StringBuilder();
+    boolean inGroup = false;
+    int i = 0;
+    while (i < glob.length()) {
+      char c = glob.charAt(i++);
+      switch (c) {
+        case '\\':
+          if (i == glob.length()) {
+            throw new PatternSyntaxException("No character to escape", glob, i - 1);
+          }
+          appendLiteral(sb, glob.charAt(i++));
+          break;
+        case '*':
+          if (i < glob.length() && glob.charAt(i) == '*') {
+            sb.append(".*");
+            i++;
+          } else {
+            sb.append(NOT_SEPARATOR).append('*');
+          }
+          break;
+        case '?':
+          sb.append(NOT_SEPARATOR);
+          break;
+        case '[':
+          i = appendClass(sb, glob, i);
+          break;
+        case '{':
+          if (inGroup) {
+            throw new PatternSyntaxException("Cannot nest groups", glob, i - 1);
+          }
+          sb.append("(?:");
+          inGroup = true;
+          break;
+        case '}':
+          if (inGroup) {
+            sb.append(')');
+            inGroup = false;
+          } else {
+            appendLiteral(sb, c);
+          }
+          break;
+        case ',':
+          if (inGroup) {
+            sb.append('|');
+          } else {
+            appendLiteral(sb, c);
+          }
+          break;
+        default:
+          appendLiteral(sb, c);
+      }
+    }
+
+    if (inGroup) {
+      throw new PatternSyntaxException("Missing '}'", glob, glob.length() - 1);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Appends the character class that starts after the '[' at glob[start - 1], and returns the index after its ']'.
+   * The class never matches the name separator.
+   */
+  private static int appendClass(StringBuilder sb, String glob, int start) {
+    sb.append("[[^").append(SEPARATOR_IN_CLASS).append("]&&[");
+    int i = start;
+    if (i < glob.length() && glob.charAt(i) == '!') {
+      sb.append('^');
+      i++;
+    }
+
+    boolean first = true;
+    while (i < glob.length()) {
+      char c = glob.charAt(i++);
+      if (c == ']' && !first) {
+        sb.append("]]");
+        return i;
+      }
+      if (c == '\\' || c == '[' || c == ']' || c == '&' || c == '^') {
+        sb.append('\\');
+      }
+      sb.append(c);
+      first = false;
+    }
+    throw new PatternSyntaxException("Missing ']'", glob, start - 1);
+  }
+
+  private static void appendLiteral(StringBuilder sb, char c) {
+    if (REGEX_SPECIAL_CHARS.indexOf(c) >= 0) {
+      sb.append('\\');
+    }
+    sb.append(c);
+  }
+
+  /**
+   * Matches a file name or a path string.
+   */
+  public abstract boolean matches(String name);
+
+  @Override
+  public boolean matches(Path path) {
+    return matches(path.toString());
+  }
+
+  private static final class LiteralMatcher extends GlobMatcher {
+    private final String literal;
+
+    LiteralMatcher(String literal) {
+      this.literal = literal;
+    }
+
+    @Override
+    public boolean matches(String name) {
+      return literal.equals(name);
+    }
+  }
+
+  /**
+   * Matches *suffix, which includes * itself.
+   */
+  private static final class SuffixMatcher extends GlobMatcher {
+    private final String suffix;
+
+    SuffixMatcher(String suffix) {
+      this.suffix = suffix;
+    }
+
+    @Override
+    public boolean matches(String name) {
+      return name.endsWith(suffix) && name.lastIndexOf(SEPARATOR, name.length() - suffix.length() - 1) < 0;
+    }
+  }
+
+  private static final class PrefixMatcher extends GlobMatcher {
+    private final String prefix;
+
+    PrefixMatcher(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public boolean matches(String name) {
+      return name.startsWith(prefix) && name.indexOf(SEPARATOR, prefix.length()) < 0;
+    }
+  }
+
+  private static final class RegexMatcher extends GlobMatcher {
+    private final Pattern pattern;
+
+    RegexMatcher(Pattern pattern) {
+      this.pattern = pattern;
+    }
+
+    @Override
+    public boolean matches(String name) {
+      return pattern.matcher(name).matches();
+    }
+  }
+}
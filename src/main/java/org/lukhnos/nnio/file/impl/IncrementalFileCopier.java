@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Brings an existing target up to date with its source by rewriting only the blocks that differ.
+ *
+ * Both files are read block by block, and a block is written only if its content differs. Data past the end of the
+ * target is then appended, or the target is truncated to the source size. Reads are cheaper than writes on most
+ * devices, and a file that has only grown is written only for its new tail.
+ */
+public final class IncrementalFileCopier {
+  private static final int BLOCK_SIZE = 65536;
+
+  private IncrementalFileCopier() {
+  }
+
+  public static void copy(File source, File target, boolean copyAttributes) throws IOException {
+    update(source, target, copyAttributes);
+  }
+
+  /**
+   * Returns the number of bytes written to the target, so that tests can tell that unchanged blocks were skipped.
+   */
+  static long update(File source, File target, boolean copyAttributes) throws IOException {
+    if (!target.isFile()) {
+      FileTreeCopier.copyFile(source, target, true, copyAttributes);
+      return target.length();
+    }
+
+    long written = 0;
+    try (FileChannel srcChannel = new FileInputStream(source).getChannel();
+         RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+      FileChannel dstChannel = raf.getChannel();
+      long srcSize = srcChannel.size();
+      long dstSize = dstChannel.size();
+      long common = Math.min(srcSize, dstSize);
+
+      ByteBuffer srcBuf = ByteBuffer.allocate(BLOCK_SIZE);
+      ByteBuffer dstBuf = ByteBuffer.allocate(BLOCK_SIZE);
+      for (long position = 0; position < common; position += BLOCK_SIZE) {
+        int length = (int) Math.min(BLOCK_SIZE, common - position);
+        readFully(srcChannel, srcBuf, position, length);
+        readFully(dstChannel, dstBuf, position, length);
+        if (!srcBuf.equals(dstBuf)) {
+          while (srcBuf.hasRemaining()) {
+            dstChannel.write(srcBuf, position + srcBuf.position());
+          }
+          written += length;
+        }
+      }
+
+      if (srcSize > dstSize) {
+        srcChannel.position(dstSize);
+        long position = dstSize;
+        while (position < srcSize) {
+          long transferred = dstChannel.transferFrom(srcChannel, position, srcSize - position);
+          if (transferred <= 0) {
+            throw new IOException("Source truncated during copy: " + source);
+          }
+          position += transferred;
+        }
+        written += srcSize - dstSize;
+      } else if (srcSize < dstSize) {
+        dstChannel.truncate(srcSize);
+      }
+    }
+
+    if (copyAttributes) {
+      target.setLastModified(source.lastModified());
+    }
+    return written;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buf, long position, int length) throws IOException {
+    buf.clear();
+    buf.limit(length);
+    while (buf.hasRemaining()) {
+      if (channel.read(buf, position + buf.position()) < 0) {
+        throw new IOException("File truncated during copy");
+      }
+    }
+    buf.flip();
+  }
+}
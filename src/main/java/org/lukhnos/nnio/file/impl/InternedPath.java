@@ -0,0 +1,306 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.FileSystem;
+import org.lukhnos.nnio.file.LinkOption;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.WatchEvent;
+import org.lukhnos.nnio.file.WatchKey;
+import org.lukhnos.nnio.file.WatchService;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A path in a {@link PathTrie}: a parent pointer and a name. The path string is built each time it is needed.
+ *
+ * Equality and hashing agree with {@link FileBasedPathImpl}. The paths returned by getParent, resolve, resolveSibling,
+ * normalize and toAbsolutePath are interned in the same trie; the other operations work on a FileBasedPathImpl
+ * built from the path string.
+ */
+public final class InternedPath implements Path {
+  private static final char SEPARATOR = File.separatorChar;
+  // File.equals ignores case on Windows, where different nodes of a trie can still be equal.
+  private static final boolean CASE_SENSITIVE = !new File("a").equals(new File("A"));
+
+  final PathTrie trie;
+  private final InternedPath parent;
+  private final String name;
+
+  // Guarded by this. Null, a single InternedPath, or a Map from names to InternedPaths.
+  private Object children;
+
+  private int hash;
+
+  InternedPath(PathTrie trie, InternedPath parent, String name) {
+    this.trie = trie;
+    this.parent = parent;
+    this.name = name;
+  }
+
+  InternedPath findChild(String childName) {
+    if (children instanceof InternedPath) {
+      InternedPath child = (InternedPath) children;
+      return child.name.equals(childName) ? child : null;
+    }
+    if (children != null) {
+      @SuppressWarnings("unchecked")
+      Map<String, InternedPath> map = (Map<String, InternedPath>) children;
+      return map.get(childName);
+    }
+    return null;
+  }
+
+  void addChild(InternedPath child) {
+    if (children == null) {
+      children = child;
+      return;
+    }
+
+    Map<String, InternedPath> map;
+    if (children instanceof InternedPath) {
+      InternedPath first = (InternedPath) children;
+      map = new HashMap<String, InternedPath>(4);
+      map.put(first.name, first);
+      children = map;
+    } else {
+      @SuppressWarnings("unchecked")
+      Map<String, InternedPath> existing = (Map<String, InternedPath>) children;
+      map = existing;
+    }
+    map.put(child.name, child);
+  }
+
+  private boolean isRoot() {
+    return parent == null && isRootName(name);
+  }
+
+  private static boolean isRootName(String name) {
+    return !name.isEmpty() && name.charAt(name.length() - 1) == SEPARATOR;
+  }
+
+  private FileBasedPathImpl toFileBasedPath() {
+    return new FileBasedPathImpl(toFile());
+  }
+
+  private InternedPath intern(Path path) {
+    return path == null ? null : trie.intern(path);
+  }
+
+  @Override
+  public int compareTo(Path o) {
+    return toString().compareTo(o.toString());
+  }
+
+  @Override
+  public boolean endsWith(Path path) {
+    return toFileBasedPath().endsWith(path);
+  }
+
+  @Override
+  public boolean endsWith(String path) {
+    return toFileBasedPath().endsWith(path);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (CASE_SENSITIVE && obj instanceof InternedPath && ((InternedPath) obj).trie == trie) {
+      // Equal paths in a trie are the same node.
+      return false;
+    }
+    if (obj instanceof Path) {
+      return toFile().equals(((Path) obj).toFile());
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = toFile().hashCode();
+      hash = h;
+    }
+    return h;
+  }
+
+  @Override
+  public Path getFileName() {
+    if (isRoot()) {
+      return null;
+    }
+    return parent == null ? this : trie.top(name);
+  }
+
+  @Override
+  public FileSystem getFileSystem() {
+    return toFileBasedPath().getFileSystem();
+  }
+
+  @Override
+  public Path getName(int index) {
+    return toFileBasedPath().getName(index);
+  }
+
+  @Override
+  public int getNameCount() {
+    int count = 0;
+    for (InternedPath p = this; p != null; p = p.parent) {
+      if (!p.isRoot()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public Path getParent() {
+    return parent;
+  }
+
+  @Override
+  public Path getRoot() {
+    InternedPath p = this;
+    while (p.parent != null) {
+      p = p.parent;
+    }
+    return p.isRoot() ? p : null;
+  }
+
+  @Override
+  public boolean isAbsolute() {
+    return toFile().isAbsolute();
+  }
+
+  @Override
+  public Iterator<Path> iterator() {
+    return toFileBasedPath().iterator();
+  }
+
+  @Override
+  public Path normalize() {
+    return intern(toFileBasedPath().normalize());
+  }
+
+  @Override
+  public WatchKey register(WatchService service, WatchEvent.Kind<?>[] kinds, WatchEvent.Modifier... modifiers) throws
+      IOException {
+    return toFileBasedPath().register(service, kinds, modifiers);
+  }
+
+  @Override
+  public WatchKey register(WatchService service, WatchEvent.Kind<?>... kinds) throws IOException {
+    return toFileBasedPath().register(service, kinds);
+  }
+
+  @Override
+  public Path relativize(Path path) {
+    return toFileBasedPath().relativize(path);
+  }
+
+  @Override
+  public Path resolve(Path other) {
+    return intern(toFileBasedPath().resolve(other));
+  }
+
+  /**
+   * A single name is resolved without building the path string.
+   */
+  @Override
+  public Path resolve(String other) {
+    if (!other.isEmpty() && other.indexOf(SEPARATOR) < 0 && other.indexOf('/') < 0 && !new File(other).isAbsolute()) {
+      return trie.child(this, other);
+    }
+    return intern(toFileBasedPath().resolve(other));
+  }
+
+  @Override
+  public Path resolveSibling(Path path) {
+    return parent == null ? intern(path) : parent.resolve(path);
+  }
+
+  @Override
+  public Path resolveSibling(String path) {
+    return parent == null ? intern(FileBasedPathImpl.get(path)) : parent.resolve(path);
+  }
+
+  @Override
+  public boolean startsWith(Path path) {
+    return toFileBasedPath().startsWith(path);
+  }
+
+  @Override
+  public boolean startsWith(String path) {
+    return toFileBasedPath().startsWith(path);
+  }
+
+  @Override
+  public Path subpath(int beginIndex, int endIndex) {
+    return toFileBasedPath().subpath(beginIndex, endIndex);
+  }
+
+  @Override
+  public Path toAbsolutePath() {
+    return isAbsolute() ? this : intern(toFileBasedPath().toAbsolutePath());
+  }
+
+  @Override
+  public File toFile() {
+    return new File(toString());
+  }
+
+  @Override
+  public Path toRealPath(LinkOption... options) throws IOException {
+    return toFileBasedPath().toRealPath(options);
+  }
+
+  @Override
+  public URI toUri() {
+    return toFile().toURI();
+  }
+
+  @Override
+  public String toString() {
+    if (parent == null) {
+      return name;
+    }
+
+    int length = 0;
+    for (InternedPath p = this; p != null; p = p.parent) {
+      length += p.name.length() + 1;
+    }
+    char[] chars = new char[length];
+    int end = length;
+    for (InternedPath p = this; p != null; p = p.parent) {
+      int start = end - p.name.length();
+      p.name.getChars(0, p.name.length(), chars, start);
+      end = start;
+      if (p.parent != null && !isRootName(p.parent.name)) {
+        chars[--end] = SEPARATOR;
+      }
+    }
+    return new String(chars, end, length - end);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Absolute paths of directories that createDirectories has recently created or seen.
+ *
+ * This lets Files.createDirectories skip the ancestors it has already confirmed, which in a sharded layout such as
+ * aa/bb/cc is nearly all of them. Files forgets directories it deletes or moves. A directory removed by other means
+ * is noticed when creating a directory under it fails, and createDirectories then starts over without this set. The
+ * set is bounded and simply cleared when full.
+ */
+public final class KnownDirectories {
+  private static final int MAX_SIZE = 16384;
+
+  private static final Set<String> paths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  private KnownDirectories() {
+  }
+
+  public static boolean contains(File absDir) {
+    return paths.contains(absDir.getPath());
+  }
+
+  public static void add(File absDir) {
+    if (paths.size() >= MAX_SIZE) {
+      paths.clear();
+    }
+    paths.add(absDir.getPath());
+  }
+
+  /**
+   * Forgets a directory that is deleted or moved, and, if tree is true, everything under it.
+   */
+  public static void remove(File file, boolean tree) {
+    String path = file.getAbsolutePath();
+    paths.remove(path);
+    if (tree) {
+      String prefix = path.endsWith(File.separator) ? path : path + File.separator;
+      Iterator<String> iter = paths.iterator();
+      while (iter.hasNext()) {
+        if (iter.next().startsWith(prefix)) {
+          iter.remove();
+        }
+      }
+    }
+  }
+
+  public static void clear() {
+    paths.clear();
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.DirectoryIteratorException;
+import org.lukhnos.nnio.file.DirectoryStream;
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A DirectoryStream over the names returned by File.list().
+ *
+ * Entries are filtered by name first, then by path, as the iterator is consumed. A Path is only created for an entry
+ * that passes the name filter, so that skipping most of a large directory allocates little more than the names.
+ */
+public final class NameListDirectoryStream implements DirectoryStream<Path> {
+  private final File dir;
+  private final String[] names;
+  private final FilenameFilter nameFilter;
+  private final DirectoryStream.Filter<? super Path> pathFilter;
+  private boolean iteratorReturned;
+  private volatile boolean closed;
+
+  private NameListDirectoryStream(File dir, String[] names, FilenameFilter nameFilter,
+      DirectoryStream.Filter<? super Path> pathFilter) {
+    this.dir = dir;
+    this.names = names;
+    this.nameFilter = nameFilter;
+    this.pathFilter = pathFilter;
+  }
+
+  /**
+   * Lists the directory. Either filter may be null.
+   *
+   * @throws NoSuchFileException if the directory does not exist.
+   */
+  public static NameListDirectoryStream open(Path dir, FilenameFilter nameFilter,
+      DirectoryStream.Filter<? super Path> pathFilter) throws IOException {
+    File file = dir.toFile();
+    String[] names = file.list();
+    if (names == null) {
+      // Only find out why after the listing failed, so that a successful open is a single call.
+      if (!file.exists()) {
+        throw new NoSuchFileException("Not found: " + dir);
+      }
+      if (!file.isDirectory()) {
+        throw new IOException("Not a directory: " + dir);
+      }
+      throw new IOException("Cannot list directory: " + dir);
+    }
+    return new NameListDirectoryStream(file, names, nameFilter, pathFilter);
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+  }
+
+  /**
+   * Can only be called once.
+   *
+   * @throws IllegalStateException if the stream is closed or the iterator has already been returned.
+   */
+  @Override
+  public synchronized Iterator<Path> iterator() {
+    if (closed) {
+      throw new IllegalStateException("Directory stream is closed");
+    }
+    if (iteratorReturned) {
+      throw new IllegalStateException("Iterator already obtained");
+    }
+    iteratorReturned = true;
+    return new NameIterator();
+  }
+
+  private class NameIterator implements Iterator<Path> {
+    private int index;
+    private Path next;
+
+    @Override
+    public boolean hasNext() {
+      if (next != null) {
+        return true;
+      }
+      while (!closed && index < names.length) {
+        String name = names[index++];
+        if (nameFilter != null && !nameFilter.accept(dir, name)) {
+          continue;
+        }
+
+        Path path = FileBasedPathImpl.get(new File(dir, name));
+        try {
+          if (pathFilter != null && !pathFilter.accept(path)) {
+            continue;
+          }
+        } catch (IOException e) {
+          throw new DirectoryIteratorException(e);
+        }
+        next = path;
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public Path next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Path result = next;
+      next = null;
+      return result;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
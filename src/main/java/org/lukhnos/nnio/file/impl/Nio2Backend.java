@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.AccessDeniedException;
+import org.lukhnos.nnio.file.AtomicMoveNotSupportedException;
+import org.lukhnos.nnio.file.CopyOption;
+import org.lukhnos.nnio.file.DirectoryNotEmptyException;
+import org.lukhnos.nnio.file.DirectoryStream;
+import org.lukhnos.nnio.file.FileAlreadyExistsException;
+import org.lukhnos.nnio.file.FileSystemLoopException;
+import org.lukhnos.nnio.file.FileVisitOption;
+import org.lukhnos.nnio.file.FileVisitResult;
+import org.lukhnos.nnio.file.FileVisitor;
+import org.lukhnos.nnio.file.LinkOption;
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.StandardCopyOption;
+import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
+import org.lukhnos.nnio.file.attribute.FileTime;
+import org.lukhnos.nnio.file.utils.DirectoryListing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Delegates Files operations to java.nio.file on runtimes that have it.
+ *
+ * Only refer to this class after checking {@link Nio2Support#ENABLED}. Paths are converted through
+ * {@link Path#toFile()}, and the java.nio.file exceptions that nnio has substitutes for are translated, so that
+ * callers can keep catching the nnio types.
+ */
+public final class Nio2Backend {
+  private Nio2Backend() {
+  }
+
+  public static BasicFileAttributes readAttributes(Path path, LinkOption... options) throws IOException {
+    try {
+      return convert(java.nio.file.Files.readAttributes(toNio(path),
+          java.nio.file.attribute.BasicFileAttributes.class, convert(options)));
+    } catch (java.nio.file.FileSystemException e) {
+      throw translate(e);
+    }
+  }
+
+  /**
+   * Returns the attributes of the file, or null if it does not exist or cannot be read.
+   */
+  public static BasicFileAttributes readAttributesIfExists(File file) {
+    try {
+      return convert(java.nio.file.Files.readAttributes(file.toPath(),
+          java.nio.file.attribute.BasicFileAttributes.class));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the attributes of the file itself, not of what a symbolic link points to, or null if it does not exist.
+   */
+  public static BasicFileAttributes readLinkAttributesIfExists(File file) throws IOException {
+    try {
+      return convert(java.nio.file.Files.readAttributes(file.toPath(), java.nio.file.attribute.BasicFileAttributes.class,
+          java.nio.file.LinkOption.NOFOLLOW_LINKS));
+    } catch (java.nio.file.NoSuchFileException e) {
+      return null;
+    } catch (java.nio.file.FileSystemException e) {
+      throw translate(e);
+    }
+  }
+
+  public static boolean isSameFile(Path path, Path path2) throws IOException {
+    try {
+      return java.nio.file.Files.isSameFile(toNio(path), toNio(path2));
+    } catch (java.nio.file.FileSystemException e) {
+      throw translate(e);
+    }
+  }
+
+  public static DirectoryStream<Path> newDirectoryStream(Path dir, String glob) throws IOException {
+    try {
+      return new Nio2DirectoryStream(java.nio.file.Files.newDirectoryStream(toNio(dir), glob));
+    } catch (java.nio.file.FileSystemException e) {
+      throw translate(e);
+    }
+  }
+
+  /**
+   * Lists a directory with one attribute read per entry. Entries whose attributes cannot be read are left out.
+   */
+  public static DirectoryListing list(Path dir) throws IOException {
+    DirectoryLister lister = new DirectoryLister(0);
+    try (java.nio.file.DirectoryStream<java.nio.file.Path> stream =
+             java.nio.file.Files.newDirectoryStream(toNio(dir))) {
+      for (java.nio.file.Path child : stream) {
+        java.nio.file.attribute.BasicFileAttributes attrs;
+        try {
+          attrs = java.nio.file.Files.readAttributes(child, java.nio.file.attribute.BasicFileAttributes.class);
+        } catch (IOException e) {
+          continue;
+        }
+        lister.add(child.getFileName().toString(), attrs.size(), attrs.lastModifiedTime().toMillis(),
+            attrs.isDirectory(), attrs.isRegularFile());
+      }
+    } catch (java.nio.file.DirectoryIteratorException e) {
+      throw translate(e.getCause());
+    } catch (java.nio.file.FileSystemException e) {
+      throw translate(e);
+    }
+    return lister.toListing(dir);
+  }
+
+  public static void walkFileTree(Path start, Set<FileVisitOption> options, int maxDepth,
+      final FileVisitor<? super Path> visitor) throws IOException {
+    Set<java.nio.file.FileVisitOption> nioOptions = EnumSet.noneOf(java.nio.file.FileVisitOption.class);
+    for (FileVisitOption option : options) {
+      nioOptions.add(java.nio.file.FileVisitOption.valueOf(option.name()));
+    }
+
+    java.nio.file.FileVisitor<java.nio.file.Path> nioVisitor = new java.nio.file.FileVisitor<java.nio.file.Path>() {
+      @Override
+      public java.nio.file.FileVisitResult preVisitDirectory(java.nio.file.Path dir,
+          java.nio.file.attribute.BasicFileAttributes attrs) throws IOException {
+        return convert(visitor.preVisitDirectory(fromNio(dir), convert(attrs)));
+      }
+
+      @Override
+      public java.nio.file.FileVisitResult visitFile(java.nio.file.Path file,
+          java.nio.file.attribute.BasicFileAttributes attrs) throws IOException {
+        return convert(visitor.visitFile(fromNio(file), convert(attrs)));
+      }
+
+      @Override
+      public java.nio.file.FileVisitResult visitFileFailed(java.nio.file.Path file, IOException exc)
+          throws IOException {
+        return convert(visitor.visitFileFailed(fromNio(file), translate(exc)));
+      }
+
+      @Override
+      public java.nio.file.FileVisitResult postVisitDirectory(java.nio.file.Path dir, IOException exc)
+          throws IOException {
+        return convert(visitor.postVisitDirectory(fromNio(dir), exc == null ? null : translate(exc)));
+      }
+    };
+    java.nio.file.Files.walkFileTree(toNio(start), nioOptions, maxDepth, nioVisitor);
+  }
+
+  /**
+   * Copies a file. Options that are not StandardCopyOption are ignored.
+   */
+  public static void copy(Path source, Path target, List<CopyOption> options) throws IOException {
+    try {
+      java.nio.file.Files.copy(toNio(source), toNio(target), convert(options));
+    } catch (java.nio.file.FileSystemException e) {
+      throw translate(e);
+    }
+  }
+
+  /**
+   * Moves a file or directory. Options that are not StandardCopyOption are ignored.
+   */
+  public static void move(Path source, Path target, List<CopyOption> options) throws IOException {
+    try {
+      java.nio.file.Files.move(toNio(source), toNio(target), convert(options));
+    } catch (java.nio.file.FileSystemException e) {
+      throw translate(e);
+    }
+  }
+
+  private static java.nio.file.Path toNio(Path path) {
+    return path.toFile().toPath();
+  }
+
+  private static Path fromNio(java.nio.file.Path path) {
+    return FileBasedPathImpl.get(path.toFile());
+  }
+
+  private static BasicFileAttributes convert(java.nio.file.attribute.BasicFileAttributes attrs) {
+    return new BasicFileAttributes(attrs.fileKey(), FileTime.fromMillis(attrs.creationTime().toMillis()),
+        FileTime.fromMillis(attrs.lastAccessTime().toMillis()),
+        FileTime.fromMillis(attrs.lastModifiedTime().toMillis()), attrs.size(), attrs.isDirectory(),
+        attrs.isRegularFile(), attrs.isSymbolicLink(), attrs.isOther());
+  }
+
+  private static java.nio.file.FileVisitResult convert(FileVisitResult result) {
+    return java.nio.file.FileVisitResult.valueOf(result.name());
+  }
+
+  private static java.nio.file.LinkOption[] convert(LinkOption[] options) {
+    java.nio.file.LinkOption[] nioOptions = new java.nio.file.LinkOption[options.length];
+    for (int i = 0; i < options.length; i++) {
+      nioOptions[i] = java.nio.file.LinkOption.valueOf(options[i].name());
+    }
+    return nioOptions;
+  }
+
+  private static java.nio.file.CopyOption[] convert(List<CopyOption> options) {
+    List<java.nio.file.CopyOption> nioOptions = new ArrayList<java.nio.file.CopyOption>();
+    for (CopyOption option : options) {
+      if (option instanceof StandardCopyOption) {
+        nioOptions.add(java.nio.file.StandardCopyOption.valueOf(((StandardCopyOption) option).name()));
+      }
+    }
+    return nioOptions.toArray(new java.nio.file.CopyOption[nioOptions.size()]);
+  }
+
+  /**
+   * Replaces the java.nio.file exceptions that have nnio substitutes. Others are returned as they are.
+   */
+  private static IOException translate(IOException e) {
+    IOException translated;
+    if (e instanceof java.nio.file.NoSuchFileException) {
+      translated = new NoSuchFileException(e.getMessage());
+    } else if (e instanceof java.nio.file.FileAlreadyExistsException) {
+      translated = new FileAlreadyExistsException(e.getMessage());
+    } else if (e instanceof java.nio.file.DirectoryNotEmptyException) {
+      translated = new DirectoryNotEmptyException(e.getMessage());
+    } else if (e instanceof java.nio.file.AccessDeniedException) {
+      translated = new AccessDeniedException(e.getMessage());
+    } else if (e instanceof java.nio.file.FileSystemLoopException) {
+      translated = new FileSystemLoopException(e.getMessage());
+    } else if (e instanceof java.nio.file.AtomicMoveNotSupportedException) {
+      java.nio.file.AtomicMoveNotSupportedException amnse = (java.nio.file.AtomicMoveNotSupportedException) e;
+      translated = new AtomicMoveNotSupportedException(amnse.getFile(), amnse.getOtherFile(), amnse.getReason());
+    } else {
+      return e;
+    }
+    translated.initCause(e);
+    return translated;
+  }
+
+  private static class Nio2DirectoryStream implements DirectoryStream<Path> {
+    private final java.nio.file.DirectoryStream<java.nio.file.Path> stream;
+
+    Nio2DirectoryStream(java.nio.file.DirectoryStream<java.nio.file.Path> stream) {
+      this.stream = stream;
+    }
+
+    @Override
+    public void close() throws IOException {
+      stream.close();
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+      final Iterator<java.nio.file.Path> iter = stream.iterator();
+      return new Iterator<Path>() {
+        @Override
+        public boolean hasNext() {
+          return iter.hasNext();
+        }
+
+        @Override
+        public Path next() {
+          return fromNio(iter.next());
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+/**
+ * Tells whether {@link Nio2Backend} is used.
+ *
+ * This class does not refer to java.nio.file itself, so that checking the flag is safe on runtimes without it. The
+ * backend is used when java.nio.file is available, unless the system property org.lukhnos.nnio.useNio2 is set to
+ * false, which forces the java.io.File-based implementation.
+ */
+public final class Nio2Support {
+  public static final String PROPERTY = "org.lukhnos.nnio.useNio2";
+
+  public static final boolean ENABLED = detect();
+
+  private Nio2Support() {
+  }
+
+  private static boolean detect() {
+    if ("false".equalsIgnoreCase(System.getProperty(PROPERTY))) {
+      return false;
+    }
+
+    try {
+      Class.forName("java.nio.file.Files");
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+}
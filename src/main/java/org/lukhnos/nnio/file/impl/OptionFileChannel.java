@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A FileChannel that adds the open options java.io cannot express to another FileChannel.
+ *
+ * If forceAfterWrite is true, every write is followed by force(forceMetadata), which makes an appending
+ * FileOutputStream behave as if opened with SYNC or DSYNC. When the channel is closed, the file is deleted if
+ * deleteOnClose is true, and its entry in the {@link AttributeCache} is invalidated, so that attributes read while
+ * the file was being written do not outlive the channel.
+ */
+public final class OptionFileChannel extends FileChannel {
+  private final FileChannel channel;
+  private final File file;
+  private final boolean deleteOnClose;
+  private final boolean forceAfterWrite;
+  private final boolean forceMetadata;
+
+  public OptionFileChannel(FileChannel channel, File file, boolean deleteOnClose, boolean forceAfterWrite,
+      boolean forceMetadata) {
+    this.channel = channel;
+    this.file = file;
+    this.deleteOnClose = deleteOnClose;
+    this.forceAfterWrite = forceAfterWrite;
+    this.forceMetadata = forceMetadata;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    return channel.read(dst);
+  }
+
+  @Override
+  public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+    return channel.read(dsts, offset, length);
+  }
+
+  @Override
+  public int read(ByteBuffer dst, long position) throws IOException {
+    return channel.read(dst, position);
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    int written = channel.write(src);
+    forceIfNeeded();
+    return written;
+  }
+
+  @Override
+  public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+    long written = channel.write(srcs, offset, length);
+    forceIfNeeded();
+    return written;
+  }
+
+  @Override
+  public int write(ByteBuffer src, long position) throws IOException {
+    int written = channel.write(src, position);
+    forceIfNeeded();
+    return written;
+  }
+
+  @Override
+  public long position() throws IOException {
+    return channel.position();
+  }
+
+  @Override
+  public FileChannel position(long newPosition) throws IOException {
+    channel.position(newPosition);
+    return this;
+  }
+
+  @Override
+  public long size() throws IOException {
+    return channel.size();
+  }
+
+  @Override
+  public FileChannel truncate(long size) throws IOException {
+    channel.truncate(size);
+    return this;
+  }
+
+  @Override
+  public void force(boolean metaData) throws IOException {
+    channel.force(metaData);
+  }
+
+  @Override
+  public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+    return channel.transferTo(position, count, target);
+  }
+
+  @Override
+  public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+    long transferred = channel.transferFrom(src, position, count);
+    forceIfNeeded();
+    return transferred;
+  }
+
+  @Override
+  public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+    return channel.map(mode, position, size);
+  }
+
+  @Override
+  public FileLock lock(long position, long size, boolean shared) throws IOException {
+    return channel.lock(position, size, shared);
+  }
+
+  @Override
+  public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+    return channel.tryLock(position, size, shared);
+  }
+
+  @Override
+  protected void implCloseChannel() throws IOException {
+    try {
+      channel.close();
+    } finally {
+      if (deleteOnClose) {
+        file.delete();
+      }
+      AttributeCache.invalidatePath(file, false);
+    }
+  }
+
+  private void forceIfNeeded() throws IOException {
+    if (forceAfterWrite) {
+      channel.force(forceMetadata);
+    }
+  }
+}
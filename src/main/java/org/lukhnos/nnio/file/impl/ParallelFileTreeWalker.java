@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.AccessDeniedException;
+import org.lukhnos.nnio.file.FileSystemLoopException;
+import org.lukhnos.nnio.file.FileVisitResult;
+import org.lukhnos.nnio.file.FileVisitor;
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Walks a file tree with one task per directory, so that directories are listed in parallel.
+ *
+ * A directory task lists the directory, calls preVisitDirectory, visits the files in it, and submits a task for each
+ * subdirectory. Every directory counts its unfinished subdirectories, and the last one to finish calls
+ * postVisitDirectory on it. No task waits for another, so the walk cannot starve a bounded executor. Only the calling
+ * thread blocks until the walk is over.
+ *
+ * See {@link org.lukhnos.nnio.file.utils.FileTreeUtils#walkFileTreeInParallel(Path, java.util.Set, int,
+ * FileVisitor, Executor)} for the contract with the visitor.
+ */
+public final class ParallelFileTreeWalker {
+  private final FileVisitor<? super Path> visitor;
+  private final boolean followLinks;
+  private final int maxDepth;
+  private final Executor executor;
+
+  // Tasks submitted and not yet finished. The walk is over when this drops to zero.
+  private final AtomicInteger outstandingTasks = new AtomicInteger();
+  private final CountDownLatch done = new CountDownLatch(1);
+  private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+  private volatile boolean terminated;
+
+  private ParallelFileTreeWalker(FileVisitor<? super Path> visitor, boolean followLinks, int maxDepth,
+      Executor executor) {
+    this.visitor = visitor;
+    this.followLinks = followLinks;
+    this.maxDepth = maxDepth;
+    this.executor = executor;
+  }
+
+  /**
+   * Must not be called from a task of the executor itself.
+   *
+   * @throws IllegalArgumentException if maxDepth is negative.
+   */
+  public static void walk(Path start, boolean followLinks, int maxDepth, FileVisitor<? super Path> visitor,
+      Executor executor) throws IOException {
+    if (maxDepth < 0) {
+      throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+    }
+    new ParallelFileTreeWalker(visitor, followLinks, maxDepth, executor).walk(start);
+  }
+
+  private void walk(Path start) throws IOException {
+    File startFile = start.toFile();
+    BasicFileAttributes attrs = new BasicFileAttributes(startFile);
+    if (!attrs.isDirectory() && !attrs.isRegularFile() && !attrs.isOther()) {
+      visitor.visitFileFailed(start, new NoSuchFileException(start.toString()));
+      return;
+    }
+    if (!attrs.isDirectory() || maxDepth == 0) {
+      visitor.visitFile(start, attrs);
+      return;
+    }
+
+    File parent = startFile.getAbsoluteFile().getParentFile();
+    String parentCanonicalPath = parent == null ? null : parent.getCanonicalPath();
+    submit(new DirectoryTask(null, start, startFile, attrs, parentCanonicalPath, 0));
+
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      terminated = true;
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while walking " + start);
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof IOException) {
+      throw (IOException) t;
+    } else if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    }
+  }
+
+  private void submit(DirectoryTask task) {
+    outstandingTasks.incrementAndGet();
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      fail(e);
+      taskFinished();
+    }
+  }
+
+  private void taskFinished() {
+    if (outstandingTasks.decrementAndGet() == 0) {
+      done.countDown();
+    }
+  }
+
+  /**
+   * Records the first failure, with later ones suppressed, and stops the walk.
+   */
+  private void fail(Throwable t) {
+    terminated = true;
+    if (!failure.compareAndSet(null, t)) {
+      Throwable first = failure.get();
+      if (first != t) {
+        first.addSuppressed(t);
+      }
+    }
+  }
+
+  /**
+   * Returns false if the result stops the walk.
+   */
+  private boolean proceed(FileVisitResult result) {
+    if (result == FileVisitResult.TERMINATE) {
+      terminated = true;
+    }
+    return !terminated;
+  }
+
+  private class DirectoryTask implements Runnable {
+    final DirectoryTask parent;
+    final Path path;
+    final File file;
+    final BasicFileAttributes attrs;
+    final String parentCanonicalPath;
+    final int depth;
+    // One for the task's own listing, plus one for each subdirectory task not yet finished.
+    final AtomicInteger pending = new AtomicInteger(1);
+    String canonicalPath;
+    volatile boolean postVisit;
+
+    DirectoryTask(DirectoryTask parent, Path path, File file, BasicFileAttributes attrs, String parentCanonicalPath,
+        int depth) {
+      this.parent = parent;
+      this.path = path;
+      this.file = file;
+      this.attrs = attrs;
+      this.parentCanonicalPath = parentCanonicalPath;
+      this.depth = depth;
+    }
+
+    @Override
+    public void run() {
+      try {
+        if (!terminated) {
+          visitDirectory();
+        }
+      } catch (Throwable t) {
+        fail(t);
+      } finally {
+        complete(this);
+        taskFinished();
+      }
+    }
+
+    private void visitDirectory() throws IOException {
+      try {
+        canonicalPath = file.getCanonicalPath();
+      } catch (IOException e) {
+        proceed(visitor.visitFileFailed(path, e));
+        return;
+      }
+
+      boolean isLink = FileTreeWalker.isLink(file, canonicalPath, parentCanonicalPath);
+      if (isLink && !followLinks) {
+        proceed(visitor.visitFile(path, FileTreeWalker.linkAttributes(attrs)));
+        return;
+      }
+      if (isLink) {
+        for (DirectoryTask ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+          if (canonicalPath.equals(ancestor.canonicalPath)) {
+            proceed(visitor.visitFileFailed(path, new FileSystemLoopException(path.toString())));
+            return;
+          }
+        }
+      }
+
+      String[] names = file.list();
+      if (names == null) {
+        proceed(visitor.visitFileFailed(path, new AccessDeniedException(path.toString())));
+        return;
+      }
+
+      FileVisitResult result = visitor.preVisitDirectory(path, attrs);
+      if (result != FileVisitResult.CONTINUE) {
+        proceed(result);
+        return;
+      }
+      postVisit = true;
+
+      for (String name : names) {
+        if (terminated) {
+          return;
+        }
+
+        File child = new File(file, name);
+        Path childPath = FileBasedPathImpl.get(child);
+        BasicFileAttributes childAttrs = new BasicFileAttributes(child);
+        if (childAttrs.isDirectory() && depth + 1 < maxDepth) {
+          pending.incrementAndGet();
+          submit(new DirectoryTask(this, childPath, child, childAttrs, canonicalPath, depth + 1));
+          continue;
+        }
+
+        if (!childAttrs.isDirectory() && !childAttrs.isRegularFile() && !childAttrs.isOther()) {
+          result = visitor.visitFileFailed(childPath, new NoSuchFileException(childPath.toString()));
+        } else {
+          result = visitor.visitFile(childPath, childAttrs);
+        }
+        if (!proceed(result) || result == FileVisitResult.SKIP_SIBLINGS) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Counts down a directory and, while that finishes directories, its ancestors, calling postVisitDirectory on each.
+   */
+  private void complete(DirectoryTask task) {
+    while (task != null && task.pending.decrementAndGet() == 0) {
+      if (task.postVisit && !terminated) {
+        try {
+          proceed(visitor.postVisitDirectory(task.path, null));
+        } catch (Throwable t) {
+          fail(t);
+        }
+      }
+      task = task.parent;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.file.Path;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A trie of interned paths. Each path is a node that points to its parent and holds its last name, so a path costs a
+ * small object regardless of its length, and the names are shared among all the paths that have them.
+ */
+public final class PathTrie {
+  // The roots, and the first names of relative paths.
+  private final ConcurrentMap<String, InternedPath> tops = new ConcurrentHashMap<String, InternedPath>();
+  private final ConcurrentMap<String, String> names = new ConcurrentHashMap<String, String>();
+  private final AtomicInteger nodeCount = new AtomicInteger();
+
+  /**
+   * Returns the interned form of the path. Paths that are equal get the same node.
+   */
+  public InternedPath intern(Path path) {
+    if (path instanceof InternedPath && ((InternedPath) path).trie == this) {
+      return (InternedPath) path;
+    }
+
+    InternedPath node = null;
+    Path root = path.getRoot();
+    if (root != null) {
+      node = top(root.toString());
+    }
+    int count = path.getNameCount();
+    for (int i = 0; i < count; i++) {
+      String name = path.getName(i).toString();
+      node = node == null ? top(name) : child(node, name);
+    }
+    return node;
+  }
+
+  /**
+   * The number of distinct paths interned, prefixes included.
+   */
+  public int size() {
+    return nodeCount.get();
+  }
+
+  InternedPath top(String name) {
+    InternedPath node = tops.get(name);
+    if (node == null) {
+      InternedPath newNode = new InternedPath(this, null, dedup(name));
+      node = tops.putIfAbsent(name, newNode);
+      if (node == null) {
+        nodeCount.incrementAndGet();
+        node = newNode;
+      }
+    }
+    return node;
+  }
+
+  InternedPath child(InternedPath parent, String name) {
+    synchronized (parent) {
+      InternedPath node = parent.findChild(name);
+      if (node == null) {
+        node = new InternedPath(this, parent, dedup(name));
+        parent.addChild(node);
+        nodeCount.incrementAndGet();
+      }
+      return node;
+    }
+  }
+
+  private String dedup(String name) {
+    String existing = names.putIfAbsent(name, name);
+    return existing == null ? name : existing;
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.lukhnos.nnio.channels.CompletionHandler;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Batches positional reads of a FileChannel and merges nearby ones.
+ *
+ * Reads are queued, and a single drain task takes everything queued so far, sorts it by position and groups reads
+ * that are at most MAX_GAP bytes apart, as long as a group spans at most MAX_READ_SIZE bytes. Only this batching is
+ * serialized: each group is handed to the executor as a task of its own, which reads it into a per-thread buffer and
+ * copies it into the callers' buffers, so groups are read concurrently. A read on its own goes straight into its
+ * buffer. Reads queued while a batch is being handed out form the next batch, so the busier the channel, the more
+ * gets merged.
+ */
+final class ReadCoalescer {
+  static final int MAX_GAP = 4096;
+  static final int MAX_READ_SIZE = 1 << 20;
+
+  private static final Comparator<Request> BY_POSITION = new Comparator<Request>() {
+    @Override
+    public int compare(Request r1, Request r2) {
+      return r1.position < r2.position ? -1 : (r1.position == r2.position ? 0 : 1);
+    }
+  };
+
+  private static final ThreadLocal<ByteBuffer> GROUP_BUFFER = new ThreadLocal<ByteBuffer>() {
+    @Override
+    protected ByteBuffer initialValue() {
+      return ByteBuffer.allocateDirect(MAX_READ_SIZE);
+    }
+  };
+
+  private final FileChannel channel;
+  private final Executor executor;
+  private List<Request> pending = new ArrayList<Request>();
+  private boolean draining;
+
+  ReadCoalescer(FileChannel channel, Executor executor) {
+    this.channel = channel;
+    this.executor = executor;
+  }
+
+  <A> void read(ByteBuffer dst, long position, final A attachment,
+      final CompletionHandler<Integer, ? super A> handler) {
+    if (handler == null) {
+      throw new NullPointerException("handler");
+    }
+    enqueue(new Request(dst, position) {
+      @Override
+      void completed(int result) {
+        handler.completed(result, attachment);
+      }
+
+      @Override
+      void failed(Throwable t) {
+        handler.failed(t, attachment);
+      }
+    });
+  }
+
+  Future<Integer> read(ByteBuffer dst, long position) {
+    final ReadFuture future = new ReadFuture();
+    enqueue(new Request(dst, position) {
+      @Override
+      void completed(int result) {
+        future.set(result);
+      }
+
+      @Override
+      void failed(Throwable t) {
+        future.setException(t);
+      }
+    });
+    return future;
+  }
+
+  private void enqueue(Request request) {
+    synchronized (this) {
+      pending.add(request);
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          drain();
+        }
+      });
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        draining = false;
+      }
+      throw e;
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      List<Request> batch;
+      synchronized (this) {
+        if (pending.isEmpty()) {
+          draining = false;
+          return;
+        }
+        batch = pending;
+        pending = new ArrayList<Request>();
+      }
+
+      Collections.sort(batch, BY_POSITION);
+      int start = 0;
+      while (start < batch.size()) {
+        Request first = batch.get(start);
+        long groupEnd = first.end();
+        int end = start + 1;
+        while (end < batch.size()) {
+          Request next = batch.get(end);
+          long newEnd = Math.max(groupEnd, next.end());
+          if (next.position > groupEnd + MAX_GAP || newEnd - first.position > MAX_READ_SIZE) {
+            break;
+          }
+          groupEnd = newEnd;
+          end++;
+        }
+
+        dispatch(batch.subList(start, end), first.position, (int) (groupEnd - first.position));
+        start = end;
+      }
+    }
+  }
+
+  private void dispatch(final List<Request> group, final long position, final int length) {
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          if (group.size() == 1) {
+            readSingle(group.get(0));
+          } else {
+            readGroup(group, position, length);
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      for (Request request : group) {
+        request.fail(e);
+      }
+    }
+  }
+
+  private void readSingle(Request request) {
+    int result;
+    try {
+      result = channel.read(request.dst, request.position);
+    } catch (Throwable t) {
+      request.fail(t);
+      return;
+    }
+    request.complete(result);
+  }
+
+  private void readGroup(List<Request> group, long position, int length) {
+    ByteBuffer buffer = GROUP_BUFFER.get();
+    buffer.clear().limit(length);
+    try {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          break;
+        }
+      }
+    } catch (Throwable t) {
+      for (Request request : group) {
+        request.fail(t);
+      }
+      return;
+    }
+
+    int filled = buffer.position();
+    for (Request request : group) {
+      int offset = (int) (request.position - position);
+      int remaining = request.dst.remaining();
+      if (remaining > 0 && offset >= filled) {
+        request.complete(-1);
+        continue;
+      }
+
+      int count = Math.max(0, Math.min(remaining, filled - offset));
+      ByteBuffer slice = buffer.duplicate();
+      slice.limit(offset + count).position(offset);
+      request.dst.put(slice);
+      request.complete(count);
+    }
+  }
+
+  private abstract static class Request {
+    final ByteBuffer dst;
+    final long position;
+
+    Request(ByteBuffer dst, long position) {
+      this.dst = dst;
+      this.position = position;
+    }
+
+    long end() {
+      return position + dst.remaining();
+    }
+
+    abstract void completed(int result);
+
+    abstract void failed(Throwable t);
+
+    // A handler that throws must not hold up the rest of the batch.
+    final void complete(int result) {
+      try {
+        completed(result);
+      } catch (RuntimeException ignored) {
+      }
+    }
+
+    final void fail(Throwable t) {
+      try {
+        failed(t);
+      } catch (RuntimeException ignored) {
+      }
+    }
+  }
+
+  private static class ReadFuture extends FutureTask<Integer> {
+    private static final Callable<Integer> NONE = new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return null;
+      }
+    };
+
+    ReadFuture() {
+      super(NONE);
+    }
+
+    @Override
+    public void run() {
+      // Completed by the drain task through set() and setException().
+    }
+
+    @Override
+    protected void set(Integer result) {
+      super.set(result);
+    }
+
+    @Override
+    protected void setException(Throwable t) {
+      super.setException(t);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The shared, bounded fork-join pool used by the parallel file operations.
+ *
+ * ForkJoinPool.commonPool() is Java 8 only, hence this. The work is mostly I/O-bound, so the pool is sized at twice
+ * the number of processors, with a floor of 4 and a cap of 32 threads. The worker threads are daemon threads.
+ */
+public final class WorkerPool {
+  public static final int DEFAULT_PARALLELISM =
+      Math.min(32, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+
+  private WorkerPool() {
+  }
+
+  public static ForkJoinPool get() {
+    return Holder.POOL;
+  }
+
+  private static class Holder {
+    static final ForkJoinPool POOL = new ForkJoinPool(DEFAULT_PARALLELISM);
+  }
+}
@@ -82,7 +82,7 @@ public abstract class FileSystemProvider {
   public AsynchronousFileChannel newAsynchronousFileChannel(Path path, Set<? extends OpenOption> options,
                                                             ExecutorService executor, FileAttribute<?>... attrs)
       throws IOException {
-    throw new UnsupportedOperationException();
+    return AsynchronousFileChannel.open(path, options, executor, attrs);
   }
 
   public abstract SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options,
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
+
+import java.io.IOException;
+
+/**
+ * Decides on a path given its attributes, as the BiPredicate taken by {@link java.nio.file.Files#find} does.
+ */
+public interface AttributeFilter {
+  boolean accept(Path path, BasicFileAttributes attrs) throws IOException;
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.lukhnos.nnio.file.DirectoryStream;
+import org.lukhnos.nnio.file.FileVisitResult;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.SimpleFileVisitor;
+import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hash table from path strings to sizes, last modified times and file types, kept outside the Java heap.
+ *
+ * The table is open-addressed, with fixed-size slots in direct or memory-mapped ByteBuffers, and the keys are stored
+ * next to it, one byte per character if every character fits and two otherwise. An entry costs about 50 bytes plus
+ * its key, and none of it is seen by the garbage collector. Looking up a String key and iterating do not allocate.
+ *
+ * Entries are found with {@link #find(String)}, which returns a handle to read the fields with. A handle stays valid
+ * until a put adds a new key, which may move the entries; updating an existing key does not. The table is not
+ * thread-safe.
+ */
+public final class AttributeTable implements Closeable {
+  public static final int REGULAR_FILE = 1;
+  public static final int DIRECTORY = 2;
+  public static final int SYMBOLIC_LINK = 3;
+  public static final int OTHER = 4;
+
+  // Slot layout: hash (int), key length (int), key address (long), size (long), last modified time (long), type
+  // (byte). A type of 0 marks an empty slot.
+  private static final int SLOT_SIZE = 33;
+  private static final int HASH_OFFSET = 0;
+  private static final int KEY_LENGTH_OFFSET = 4;
+  private static final int KEY_ADDRESS_OFFSET = 8;
+  private static final int SIZE_OFFSET = 16;
+  private static final int TIME_OFFSET = 24;
+  private static final int TYPE_OFFSET = 32;
+
+  private static final int SLOT_CHUNK_BITS = 20;
+  private static final int KEY_CHUNK_BITS = 24;
+  private static final int KEY_CHUNK_SIZE = 1 << KEY_CHUNK_BITS;
+  // Set in the key length when the key is stored one byte per character.
+  private static final int LATIN1 = 0x80000000;
+  private static final float LOAD_FACTOR = 0.7f;
+
+  private final Allocator allocator;
+  private final List<ByteBuffer> keyChunks = new ArrayList<ByteBuffer>();
+  private final KeyView keyView = new KeyView();
+  private ByteBuffer[] slotChunks;
+  private int capacity;
+  private int count;
+  private int keyChunkPosition = KEY_CHUNK_SIZE;
+  private boolean closed;
+
+  private AttributeTable(Allocator allocator, int expectedEntries) throws IOException {
+    this.allocator = allocator;
+    int initialCapacity = 16;
+    while (initialCapacity * LOAD_FACTOR < expectedEntries) {
+      initialCapacity <<= 1;
+    }
+    capacity = initialCapacity;
+    slotChunks = newSlotChunks(initialCapacity);
+  }
+
+  /**
+   * Creates a table in direct buffers, which count against -XX:MaxDirectMemorySize.
+   */
+  public static AttributeTable newDirect(int expectedEntries) {
+    try {
+      return new AttributeTable(new DirectAllocator(), expectedEntries);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Creates a table mapped onto a temporary file in the given directory, which is deleted when the table is closed.
+   * The operating system pages the table in and out, and slots left behind when the table grows stay in the file.
+   */
+  public static AttributeTable newMapped(Path directory, int expectedEntries) throws IOException {
+    return new AttributeTable(new MappedAllocator(directory.toFile()), expectedEntries);
+  }
+
+  /**
+   * Called with each entry. The key is only valid during the call; use toString() to keep it.
+   */
+  public interface EntryVisitor {
+    void visit(CharSequence key, long size, long lastModifiedTime, int type);
+  }
+
+  public void put(String key, long size, long lastModifiedTime, int type) throws IOException {
+    if (type < REGULAR_FILE || type > OTHER) {
+      throw new IllegalArgumentException("Invalid type: " + type);
+    }
+    checkOpen();
+    int slot = findSlot(key);
+    if (slot < 0) {
+      if (count + 1 > capacity * LOAD_FACTOR) {
+        grow();
+        slot = findSlot(key);
+      }
+      slot = -slot - 1;
+      ByteBuffer chunk = slotChunk(slot);
+      int offset = slotOffset(slot);
+      storeKey(key, chunk, offset);
+      chunk.putInt(offset + HASH_OFFSET, key.hashCode());
+      count++;
+    }
+    ByteBuffer chunk = slotChunk(slot);
+    int offset = slotOffset(slot);
+    chunk.putLong(offset + SIZE_OFFSET, size);
+    chunk.putLong(offset + TIME_OFFSET, lastModifiedTime);
+    chunk.put(offset + TYPE_OFFSET, (byte) type);
+  }
+
+  public void put(Path path, BasicFileAttributes attrs) throws IOException {
+    put(path.toString(), attrs.size(), attrs.lastModifiedTime().toMillis(), typeOf(attrs));
+  }
+
+  /**
+   * Adds everything in a file tree, start included, as walked by
+   * {@link Files#walkFileTree(Path, org.lukhnos.nnio.file.FileVisitor)}. Entries that cannot be read are skipped.
+   */
+  public void addTree(Path start) throws IOException {
+    Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        put(dir, attrs);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        put(file, attrs);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Adds the entries of a directory, but not the directory itself. Entries that disappear between the listing and
+   * the reading of their attributes are skipped.
+   */
+  public void addDirectory(Path dir) throws IOException {
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path path : stream) {
+        BasicFileAttributes attrs;
+        try {
+          attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+          continue;
+        }
+        put(path, attrs);
+      }
+    }
+  }
+
+  /**
+   * Returns a handle to the entry of the key, or -1 if there is none.
+   */
+  public int find(String key) {
+    checkOpen();
+    int slot = findSlot(key);
+    return slot < 0 ? -1 : slot;
+  }
+
+  public boolean contains(String key) {
+    return find(key) >= 0;
+  }
+
+  public long size(int entry) {
+    return slotChunk(entry).getLong(slotOffset(entry) + SIZE_OFFSET);
+  }
+
+  public long lastModifiedTime(int entry) {
+    return slotChunk(entry).getLong(slotOffset(entry) + TIME_OFFSET);
+  }
+
+  public int type(int entry) {
+    return slotChunk(entry).get(slotOffset(entry) + TYPE_OFFSET);
+  }
+
+  public int entryCount() {
+    return count;
+  }
+
+  /**
+   * Calls the visitor with every entry, in no particular order.
+   */
+  public void forEach(EntryVisitor visitor) {
+    checkOpen();
+    for (int slot = 0; slot < capacity; slot++) {
+      ByteBuffer chunk = slotChunk(slot);
+      int offset = slotOffset(slot);
+      int type = chunk.get(offset + TYPE_OFFSET);
+      if (type != 0) {
+        keyView.set(chunk.getInt(offset + KEY_LENGTH_OFFSET), chunk.getLong(offset + KEY_ADDRESS_OFFSET));
+        visitor.visit(keyView, chunk.getLong(offset + SIZE_OFFSET), chunk.getLong(offset + TIME_OFFSET), type);
+      }
+    }
+  }
+
+  /**
+   * Releases the buffers. Direct memory is returned when the buffers are garbage collected.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    slotChunks = null;
+    keyChunks.clear();
+    allocator.close();
+  }
+
+  private static int typeOf(BasicFileAttributes attrs) {
+    if (attrs.isSymbolicLink()) {
+      return SYMBOLIC_LINK;
+    } else if (attrs.isDirectory()) {
+      return DIRECTORY;
+    } else if (attrs.isRegularFile()) {
+      return REGULAR_FILE;
+    }
+    return OTHER;
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("Table is closed");
+    }
+  }
+
+  private ByteBuffer slotChunk(int slot) {
+    return slotChunks[slot >>> SLOT_CHUNK_BITS];
+  }
+
+  private static int slotOffset(int slot) {
+    return (slot & ((1 << SLOT_CHUNK_BITS) - 1)) * SLOT_SIZE;
+  }
+
+  private static int spread(int hash) {
+    int h = hash * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Returns the slot of the key, or -(slot + 1) for the empty slot where it would go.
+   */
+  private int findSlot(String key) {
+    int hash = key.hashCode();
+    int mask = capacity - 1;
+    for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+      ByteBuffer chunk = slotChunk(slot);
+      int offset = slotOffset(slot);
+      if (chunk.get(offset + TYPE_OFFSET) == 0) {
+        return -slot - 1;
+      }
+      if (chunk.getInt(offset + HASH_OFFSET) == hash && keyEquals(chunk, offset, key)) {
+        return slot;
+      }
+    }
+  }
+
+  private boolean keyEquals(ByteBuffer chunk, int offset, String key) {
+    int lengthField = chunk.getInt(offset + KEY_LENGTH_OFFSET);
+    int length = lengthField & ~LATIN1;
+    if (length != key.length()) {
+      return false;
+    }
+
+    long address = chunk.getLong(offset + KEY_ADDRESS_OFFSET);
+    ByteBuffer keyChunk = keyChunks.get((int) (address >>> KEY_CHUNK_BITS));
+    int position = (int) (address & (KEY_CHUNK_SIZE - 1));
+    if ((lengthField & LATIN1) != 0) {
+      for (int i = 0; i < length; i++) {
+        if ((keyChunk.get(position + i) & 0xff) != key.charAt(i)) {
+          return false;
+        }
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        if (keyChunk.getChar(position + 2 * i) != key.charAt(i)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void storeKey(String key, ByteBuffer chunk, int offset) throws IOException {
+    int length = key.length();
+    boolean latin1 = true;
+    for (int i = 0; i < length && latin1; i++) {
+      latin1 = key.charAt(i) < 0x100;
+    }
+
+    int bytes = latin1 ? length : 2 * length;
+    if (bytes > KEY_CHUNK_SIZE) {
+      throw new IllegalArgumentException("Key too long");
+    }
+    if (keyChunkPosition + bytes > KEY_CHUNK_SIZE) {
+      keyChunks.add(allocator.allocate(KEY_CHUNK_SIZE));
+      keyChunkPosition = 0;
+    }
+
+    ByteBuffer keyChunk = keyChunks.get(keyChunks.size() - 1);
+    for (int i = 0; i < length; i++) {
+      if (latin1) {
+        keyChunk.put(keyChunkPosition + i, (byte) key.charAt(i));
+      } else {
+        keyChunk.putChar(keyChunkPosition + 2 * i, key.charAt(i));
+      }
+    }
+
+    long address = ((long) (keyChunks.size() - 1) << KEY_CHUNK_BITS) | keyChunkPosition;
+    keyChunkPosition += bytes;
+    chunk.putInt(offset + KEY_LENGTH_OFFSET, latin1 ? length | LATIN1 : length);
+    chunk.putLong(offset + KEY_ADDRESS_OFFSET, address);
+  }
+
+  private ByteBuffer[] newSlotChunks(int slots) throws IOException {
+    int slotsPerChunk = Math.min(slots, 1 << SLOT_CHUNK_BITS);
+    ByteBuffer[] chunks = new ByteBuffer[slots / slotsPerChunk];
+    for (int i = 0; i < chunks.length; i++) {
+      chunks[i] = allocator.allocate(slotsPerChunk * SLOT_SIZE);
+    }
+    return chunks;
+  }
+
+  /**
+   * Doubles the capacity. The keys stay where they are; only the slots are copied, using the hashes kept in them.
+   */
+  private void grow() throws IOException {
+    ByteBuffer[] oldChunks = slotChunks;
+    int oldCapacity = capacity;
+    capacity = oldCapacity << 1;
+    slotChunks = newSlotChunks(capacity);
+
+    int mask = capacity - 1;
+    int oldSlotsPerChunk = Math.min(oldCapacity, 1 << SLOT_CHUNK_BITS);
+    for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+      ByteBuffer oldChunk = oldChunks[oldSlot / oldSlotsPerChunk];
+      int oldOffset = (oldSlot % oldSlotsPerChunk) * SLOT_SIZE;
+      if (oldChunk.get(oldOffset + TYPE_OFFSET) == 0) {
+        continue;
+      }
+
+      int slot = spread(oldChunk.getInt(oldOffset + HASH_OFFSET)) & mask;
+      while (slotChunk(slot).get(slotOffset(slot) + TYPE_OFFSET) != 0) {
+        slot = (slot + 1) & mask;
+      }
+      ByteBuffer chunk = slotChunk(slot);
+      int offset = slotOffset(slot);
+      for (int i = 0; i < SLOT_SIZE; i++) {
+        chunk.put(offset + i, oldChunk.get(oldOffset + i));
+      }
+    }
+  }
+
+  /**
+   * A reusable view of a stored key.
+   */
+  private class KeyView implements CharSequence {
+    private ByteBuffer chunk;
+    private int position;
+    private int length;
+    private boolean latin1;
+
+    void set(int lengthField, long address) {
+      chunk = keyChunks.get((int) (address >>> KEY_CHUNK_BITS));
+      position = (int) (address & (KEY_CHUNK_SIZE - 1));
+      length = lengthField & ~LATIN1;
+      latin1 = (lengthField & LATIN1) != 0;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+      }
+      return latin1 ? (char) (chunk.get(position + index) & 0xff) : chunk.getChar(position + 2 * index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+        chars[i] = charAt(i);
+      }
+      return new String(chars);
+    }
+  }
+
+  private interface Allocator extends Closeable {
+    ByteBuffer allocate(int bytes) throws IOException;
+  }
+
+  private static class DirectAllocator implements Allocator {
+    @Override
+    public ByteBuffer allocate(int bytes) {
+      return ByteBuffer.allocateDirect(bytes);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static class MappedAllocator implements Allocator {
+    private final File file;
+    private final RandomAccessFile raf;
+    private long length;
+
+    MappedAllocator(File directory) throws IOException {
+      file = File.createTempFile("nnio-attributes", ".tmp", directory);
+      file.deleteOnExit();
+      raf = new RandomAccessFile(file, "rw");
+    }
+
+    @Override
+    public ByteBuffer allocate(int bytes) throws IOException {
+      ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, length, bytes);
+      length += bytes;
+      return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+      raf.close();
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.lukhnos.nnio.file.Path;
+
+import java.util.BitSet;
+
+/**
+ * The entries of a directory with their sizes, last modified times and types, held in parallel arrays.
+ *
+ * Entry i has the name names()[i], the size sizes()[i] and the last modified time, in milliseconds,
+ * lastModifiedTimes()[i]; its bits in directories() and regularFiles() tell its type, and an entry with neither bit
+ * set is some other kind of file. Symbolic links are followed. The arrays and bit sets are not copied, so callers can
+ * sort and filter on them directly, but should not modify them. Use {@link DirectoryUtils#list(Path)} to get one.
+ */
+public final class DirectoryListing {
+  private final Path directory;
+  private final String[] names;
+  private final long[] sizes;
+  private final long[] lastModifiedTimes;
+  private final BitSet directories;
+  private final BitSet regularFiles;
+
+  public DirectoryListing(Path directory, String[] names, long[] sizes, long[] lastModifiedTimes, BitSet directories,
+      BitSet regularFiles) {
+    if (sizes.length != names.length || lastModifiedTimes.length != names.length) {
+      throw new IllegalArgumentException("Arrays must have the same length");
+    }
+    this.directory = directory;
+    this.names = names;
+    this.sizes = sizes;
+    this.lastModifiedTimes = lastModifiedTimes;
+    this.directories = directories;
+    this.regularFiles = regularFiles;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public int count() {
+    return names.length;
+  }
+
+  public String[] names() {
+    return names;
+  }
+
+  public long[] sizes() {
+    return sizes;
+  }
+
+  public long[] lastModifiedTimes() {
+    return lastModifiedTimes;
+  }
+
+  public BitSet directories() {
+    return directories;
+  }
+
+  public BitSet regularFiles() {
+    return regularFiles;
+  }
+
+  public String name(int index) {
+    return names[index];
+  }
+
+  public long size(int index) {
+    return sizes[index];
+  }
+
+  public long lastModifiedTime(int index) {
+    return lastModifiedTimes[index];
+  }
+
+  public boolean isDirectory(int index) {
+    return directories.get(index);
+  }
+
+  public boolean isRegularFile(int index) {
+    return regularFiles.get(index);
+  }
+
+  public boolean isOther(int index) {
+    return !directories.get(index) && !regularFiles.get(index);
+  }
+
+  /**
+   * Returns the path of an entry, resolved against the directory.
+   */
+  public Path resolve(int index) {
+    return directory.resolve(names[index]);
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.lukhnos.nnio.file.DirectoryStream;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.impl.DirectoryLister;
+import org.lukhnos.nnio.file.impl.NameListDirectoryStream;
+
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+/**
+ * Directory listing that has no counterpart in {@link org.lukhnos.nnio.file.Files}.
+ */
+public final class DirectoryUtils {
+  private DirectoryUtils() {
+  }
+
+  /**
+   * Opens a directory, returning the entries whose names the filter accepts.
+   *
+   * The filter is given the directory and the bare name of each entry, and a Path is only created for the entries it
+   * accepts. This is cheaper than {@link org.lukhnos.nnio.file.Files#newDirectoryStream(Path, DirectoryStream.Filter)}
+   * when most entries of a large directory are skipped.
+   *
+   * @throws org.lukhnos.nnio.file.NoSuchFileException if the directory does not exist.
+   */
+  public static DirectoryStream<Path> newDirectoryStream(Path dir, FilenameFilter filter) throws IOException {
+    return NameListDirectoryStream.open(dir, filter, null);
+  }
+
+  /**
+   * Lists a directory with the sizes, last modified times and types of its entries, without creating a Path or
+   * attribute object per entry. See {@link DirectoryListing}.
+   *
+   * @throws org.lukhnos.nnio.file.NoSuchFileException if the directory does not exist.
+   */
+  public static DirectoryListing list(Path dir) throws IOException {
+    return DirectoryLister.list(dir);
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The total size and the number of files and directories of a file tree. The directory counted includes the root of
+ * the tree.
+ *
+ * If parts of the tree could not be read, the totals are those of the rest, and {@link #failures()} tells what was
+ * missed. Failures are not compared by equals().
+ */
+public final class DiskUsage {
+  private final long size;
+  private final long fileCount;
+  private final long directoryCount;
+  private final List<IOException> failures;
+
+  public DiskUsage(long size, long fileCount, long directoryCount) {
+    this(size, fileCount, directoryCount, Collections.<IOException>emptyList());
+  }
+
+  public DiskUsage(long size, long fileCount, long directoryCount, List<IOException> failures) {
+    this.size = size;
+    this.fileCount = fileCount;
+    this.directoryCount = directoryCount;
+    this.failures = failures.isEmpty() ? Collections.<IOException>emptyList()
+        : Collections.unmodifiableList(new ArrayList<IOException>(failures));
+  }
+
+  /**
+   * The sum of the sizes of the files, in bytes.
+   */
+  public long size() {
+    return size;
+  }
+
+  public long fileCount() {
+    return fileCount;
+  }
+
+  public long directoryCount() {
+    return directoryCount;
+  }
+
+  /**
+   * The failures to read directories or files of the tree, whose usage is missing from the totals. Empty if the whole
+   * tree was counted.
+   */
+  public List<IOException> failures() {
+    return failures;
+  }
+
+  public boolean isComplete() {
+    return failures.isEmpty();
+  }
+
+  public DiskUsage add(DiskUsage other) {
+    List<IOException> allFailures = failures;
+    if (!other.failures.isEmpty()) {
+      allFailures = new ArrayList<IOException>(failures);
+      allFailures.addAll(other.failures);
+    }
+    return new DiskUsage(size + other.size, fileCount + other.fileCount, directoryCount + other.directoryCount,
+        allFailures);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof DiskUsage)) {
+      return false;
+    }
+    DiskUsage other = (DiskUsage) obj;
+    return size == other.size && fileCount == other.fileCount && directoryCount == other.directoryCount;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (31 * (31 * size + fileCount) + directoryCount);
+  }
+
+  @Override
+  public String toString() {
+    return "DiskUsage(size=" + size + ", files=" + fileCount + ", directories=" + directoryCount + ", failures="
+        + failures.size() + ")";
+  }
+}
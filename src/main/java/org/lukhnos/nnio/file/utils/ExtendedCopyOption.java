@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.lukhnos.nnio.file.CopyOption;
+
+/**
+ * Copy options specific to nnio, in the spirit of com.sun.nio.file.ExtendedCopyOption.
+ */
+public enum ExtendedCopyOption implements CopyOption {
+  /**
+   * Copies a directory with everything in it. Files are copied in parallel on a shared fork-join pool, and last
+   * modified times are always kept.
+   */
+  RECURSIVE,
+
+  /**
+   * Copies a large file as several ranges at the same time. Files smaller than 64 MB are copied as usual. This only
+   * applies to copying a single file.
+   */
+  CHUNKED,
+
+  /**
+   * Updates an existing target in place, writing only the 64 KB blocks that differ from the source, and then
+   * truncating or extending the target. This implies REPLACE_EXISTING. Copying a directory with it throws IllegalArgumentException.
+   */
+  INCREMENTAL
+}
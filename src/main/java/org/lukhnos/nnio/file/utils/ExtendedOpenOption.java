@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.lukhnos.nnio.file.OpenOption;
+
+/**
+ * Open options specific to nnio, in the spirit of com.sun.nio.file.ExtendedOpenOption.
+ */
+public enum ExtendedOpenOption implements OpenOption {
+  /**
+   * Queues the reads of an {@link org.lukhnos.nnio.channels.AsynchronousFileChannel} and serves the ones that are
+   * within 4 KB of each other with a single read of up to 1 MB. The handlers of merged reads are called one after
+   * another on the thread that did the read, so they should return quickly. This only applies to
+   * AsynchronousFileChannel.
+   */
+  COALESCE_READS
+}
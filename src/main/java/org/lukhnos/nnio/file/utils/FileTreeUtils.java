@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.lukhnos.nnio.file.DirectoryStream;
+import org.lukhnos.nnio.file.FileVisitOption;
+import org.lukhnos.nnio.file.FileVisitor;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.impl.AttributeCache;
+import org.lukhnos.nnio.file.impl.DiskUsageCounter;
+import org.lukhnos.nnio.file.impl.FileTreeDeleter;
+import org.lukhnos.nnio.file.impl.FileTreeStream;
+import org.lukhnos.nnio.file.impl.KnownDirectories;
+import org.lukhnos.nnio.file.impl.NameListDirectoryStream;
+import org.lukhnos.nnio.file.impl.ParallelFileTreeWalker;
+import org.lukhnos.nnio.file.impl.WorkerPool;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Operations on whole file trees that have no counterpart in {@link org.lukhnos.nnio.file.Files}.
+ */
+public final class FileTreeUtils {
+  private FileTreeUtils() {
+  }
+
+  /**
+   * Deletes a file, or a directory and everything in it, using the shared worker pool.
+   */
+  public static void deleteRecursively(Path path) throws IOException {
+    deleteRecursively(path, WorkerPool.get());
+  }
+
+  /**
+   * Deletes a file, or a directory and everything in it, in parallel on the given pool.
+   *
+   * Entries are deleted bottom-up, and a file costs a single delete call. Symbolic links are deleted, not followed.
+   * Entries that cannot be deleted do not stop the deletion; an IOException that counts them, with the first of them
+   * as suppressed exceptions, is thrown at the end.
+   *
+   * @throws org.lukhnos.nnio.file.NoSuchFileException if the path does not exist.
+   */
+  public static void deleteRecursively(Path path, ForkJoinPool pool) throws IOException {
+    try {
+      FileTreeDeleter.delete(path.toFile(), pool);
+    } finally {
+      KnownDirectories.remove(path.toFile(), true);
+      AttributeCache.invalidatePath(path.toFile(), true);
+    }
+  }
+
+  /**
+   * Walks a file tree on the shared worker pool, following no links and with no depth limit.
+   */
+  public static void walkFileTreeInParallel(Path start, FileVisitor<? super Path> visitor) throws IOException {
+    walkFileTreeInParallel(start, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, visitor,
+        WorkerPool.get());
+  }
+
+  /**
+   * Walks a file tree like {@link org.lukhnos.nnio.file.Files#walkFileTree(Path, Set, int, FileVisitor)}, but lists
+   * the directories in parallel on the executor. The number of directories listed at the same time is bounded by the
+   * executor's threads. This call blocks until the walk is over, so it must not be made from a task of the executor.
+   *
+   * The visitor is called from the executor's threads, several at a time, and must be thread-safe. For a given
+   * directory, preVisitDirectory is called before any entry in it is visited, and postVisitDirectory after everything
+   * under it has been visited. Entries of different directories are visited in no particular order.
+   *
+   * TERMINATE stops the walk as soon as the running tasks notice it. SKIP_SIBLINGS stops the visiting of the files
+   * left in the directory, but subdirectories already handed to the executor are still walked. When returned from
+   * preVisitDirectory, it is the same as SKIP_SUBTREE. An exception thrown by the visitor also stops the walk, and
+   * the first one is rethrown here, with the rest suppressed.
+   *
+   * @throws IllegalArgumentException if maxDepth is negative.
+   */
+  public static void walkFileTreeInParallel(Path start, Set<FileVisitOption> options, int maxDepth,
+      FileVisitor<? super Path> visitor, Executor executor) throws IOException {
+    ParallelFileTreeWalker.walk(start, options.contains(FileVisitOption.FOLLOW_LINKS), maxDepth, visitor, executor);
+  }
+
+  /**
+   * Lists a directory lazily, as {@link java.nio.file.Files#list(java.nio.file.Path)} does. The entries are not
+   * sorted.
+   *
+   * @throws org.lukhnos.nnio.file.NoSuchFileException if the directory does not exist.
+   */
+  public static DirectoryStream<Path> list(Path dir) throws IOException {
+    return NameListDirectoryStream.open(dir, null, null);
+  }
+
+  /**
+   * Returns everything in a file tree, start included, with no depth limit.
+   */
+  public static DirectoryStream<Path> walk(Path start, FileVisitOption... options) throws IOException {
+    return walk(start, Integer.MAX_VALUE, options);
+  }
+
+  /**
+   * Returns everything in a file tree down to maxDepth, start included, as
+   * {@link java.nio.file.Files#walk(java.nio.file.Path, int, java.nio.file.FileVisitOption...)} does.
+   *
+   * The entries are produced depth-first as the iterator is consumed, and a directory is only listed when the
+   * iterator moves past it. An I/O error is thrown by the iterator as a
+   * {@link org.lukhnos.nnio.file.DirectoryIteratorException}.
+   *
+   * @throws org.lukhnos.nnio.file.NoSuchFileException if start does not exist.
+   */
+  public static DirectoryStream<Path> walk(Path start, int maxDepth, FileVisitOption... options) throws IOException {
+    return find(start, maxDepth, null, null, options);
+  }
+
+  /**
+   * Returns the entries of a file tree that the matcher accepts, as
+   * {@link java.nio.file.Files#find(java.nio.file.Path, int, java.util.function.BiPredicate,
+   * java.nio.file.FileVisitOption...)} does, except that directories the descend filter rejects are not listed at
+   * all. A rejected directory itself is still given to the matcher. Either filter may be null, which accepts
+   * everything.
+   *
+   * @throws org.lukhnos.nnio.file.NoSuchFileException if start does not exist.
+   */
+  public static DirectoryStream<Path> find(Path start, int maxDepth, AttributeFilter matcher,
+      AttributeFilter descendFilter, FileVisitOption... options) throws IOException {
+    boolean followLinks = Arrays.asList(options).contains(FileVisitOption.FOLLOW_LINKS);
+    return FileTreeStream.open(start, maxDepth, followLinks, matcher, descendFilter);
+  }
+
+  /**
+   * Returns the total size and the number of files and directories of a file tree, counted on the shared worker pool.
+   */
+  public static DiskUsage diskUsage(Path start) throws IOException {
+    return diskUsage(start, null, WorkerPool.get());
+  }
+
+  /**
+   * Returns the total size and the number of files and directories of a file tree, counted in parallel on the given
+   * pool in a single pass over the metadata. If start is a file, the usage is that of the file alone.
+   *
+   * If breakdown is not null, the usage of the subtree under every directory, start included, is put in it when the
+   * count is done. Symbolic links to directories are not followed. Directories that cannot be listed do not stop the
+   * count; the totals of the rest are returned, with the failures in {@link DiskUsage#failures()}.
+   *
+   * @throws org.lukhnos.nnio.file.NoSuchFileException if start does not exist.
+   */
+  public static DiskUsage diskUsage(Path start, Map<Path, DiskUsage> breakdown, ForkJoinPool pool)
+      throws IOException {
+    return DiskUsageCounter.count(start, breakdown, pool);
+  }
+}
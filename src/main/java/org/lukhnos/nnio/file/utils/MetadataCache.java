@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.impl.AttributeCache;
+
+/**
+ * Controls the optional metadata cache under {@link org.lukhnos.nnio.file.Files}.
+ *
+ * When enabled, Files.exists, notExists, isDirectory, isRegularFile, size, getLastModifiedTime and readAttributes
+ * are answered from a bounded LRU cache whose entries expire after a time to live. Changes made through Files
+ * (delete, move, copy, file and directory creation, and opening files for writing) invalidate the affected entries.
+ * Changes made by other processes, or through java.io.File directly, are only seen once an entry expires, or after
+ * {@link #invalidate(Path)} is called. The cache is off by default.
+ */
+public final class MetadataCache {
+  private MetadataCache() {
+  }
+
+  /**
+   * Turns the cache on, replacing any existing one.
+   */
+  public static void enable(int maxEntries, long ttlMillis) {
+    AttributeCache.enable(maxEntries, ttlMillis);
+  }
+
+  public static void disable() {
+    AttributeCache.disable();
+  }
+
+  public static boolean isEnabled() {
+    return AttributeCache.get() != null;
+  }
+
+  public static void invalidate(Path path) {
+    AttributeCache.invalidatePath(path.toFile(), true);
+  }
+
+  public static void invalidateAll() {
+    AttributeCache cache = AttributeCache.get();
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * Returns the number of lookups answered from the cache since it was enabled.
+   */
+  public static long hitCount() {
+    AttributeCache cache = AttributeCache.get();
+    return cache == null ? 0 : cache.hitCount();
+  }
+
+  /**
+   * Returns the number of lookups that went to the file system since the cache was enabled.
+   */
+  public static long missCount() {
+    AttributeCache cache = AttributeCache.get();
+    return cache == null ? 0 : cache.missCount();
+  }
+}
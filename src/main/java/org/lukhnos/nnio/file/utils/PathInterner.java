@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.impl.FileBasedPathImpl;
+import org.lukhnos.nnio.file.impl.PathTrie;
+
+/**
+ * A factory of paths that share their parents and names, for holding very many paths in memory.
+ *
+ * An interned path is a parent pointer and a name, with the names deduplicated, so a path costs a small fixed amount
+ * however long it is. The path string is built when toString() or toFile() is called, which makes those calls cost
+ * more than they do for other paths. Interned paths are equal to, and hash like, the other paths with the same
+ * string, and equal interned paths from the same interner are the same object. An interner never forgets a path.
+ * It is safe to use from several threads.
+ */
+public final class PathInterner {
+  private final PathTrie trie = new PathTrie();
+
+  /**
+   * Returns the interned form of a path.
+   */
+  public Path intern(Path path) {
+    return trie.intern(path);
+  }
+
+  /**
+   * Returns the interned form of the path that {@link org.lukhnos.nnio.file.Paths#get(String, String...)} would.
+   */
+  public Path get(String first, String... more) {
+    return trie.intern(FileBasedPathImpl.get(first, more));
+  }
+
+  /**
+   * The number of distinct paths interned, including the parents of the paths passed in.
+   */
+  public int size() {
+    return trie.size();
+  }
+}
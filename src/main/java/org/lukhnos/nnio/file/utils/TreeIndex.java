@@ -0,0 +1,425 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.lukhnos.nnio.file.AccessDeniedException;
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A snapshot of a directory tree: the relative path, size and last modified time of every entry, which can be saved
+ * to a compact binary file and used later to find what has changed.
+ *
+ * A rescan does not list a directory whose last modified time is unchanged; the listing in the index is reused. The
+ * files in it are still checked, because changing a file in place does not change the time of its directory, and
+ * every subdirectory is visited, because a change deep down does not reach its ancestors. Passing
+ * trustDirectoryTimes to {@link #rescan(boolean)} also skips the checking of files in unchanged directories, which
+ * only misses in-place changes and is suitable for trees whose writers replace files by renaming.
+ *
+ * Entries are kept in depth-first order, with the names in a directory sorted, and the paths are stored with the
+ * prefix they share with the previous path left out. Symbolic links to directories are recorded as files and not
+ * followed.
+ */
+public final class TreeIndex {
+  private static final int MAGIC = 0x4e4e5449; // "NNTI"
+  private static final int VERSION = 1;
+
+  private final File root;
+  private final String[] paths;
+  private final long[] sizes;
+  private final long[] lastModifiedTimes;
+  private final BitSet directories;
+  // For each entry, the index after its last descendant.
+  private final int[] subtreeEnds;
+
+  private TreeIndex(File root, String[] paths, long[] sizes, long[] lastModifiedTimes, BitSet directories,
+      int[] subtreeEnds) {
+    this.root = root;
+    this.paths = paths;
+    this.sizes = sizes;
+    this.lastModifiedTimes = lastModifiedTimes;
+    this.directories = directories;
+    this.subtreeEnds = subtreeEnds;
+  }
+
+  /**
+   * Scans a directory tree.
+   *
+   * @throws NoSuchFileException if root does not exist.
+   */
+  public static TreeIndex build(Path root) throws IOException {
+    return new Scanner(root.toFile().getAbsoluteFile(), null, false).scan();
+  }
+
+  public static TreeIndex load(Path indexFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile.toFile())))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a tree index: " + indexFile);
+      }
+
+      File root = new File(in.readUTF());
+      int count = in.readInt();
+      String[] paths = new String[count];
+      long[] sizes = new long[count];
+      long[] lastModifiedTimes = new long[count];
+      BitSet directories = new BitSet(count);
+      String previous = "";
+      for (int i = 0; i < count; i++) {
+        int shared = in.readUnsignedShort();
+        String path = previous.substring(0, shared) + in.readUTF();
+        paths[i] = path;
+        if (in.readBoolean()) {
+          directories.set(i);
+        }
+        sizes[i] = in.readLong();
+        lastModifiedTimes[i] = in.readLong();
+        previous = path;
+      }
+      return new TreeIndex(root, paths, sizes, lastModifiedTimes, directories, computeSubtreeEnds(paths));
+    }
+  }
+
+  public void save(Path indexFile) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(indexFile.toFile())))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(root.getPath());
+      out.writeInt(paths.length);
+      String previous = "";
+      for (int i = 0; i < paths.length; i++) {
+        String path = paths[i];
+        int shared = Math.min(sharedPrefixLength(previous, path), 0xffff);
+        out.writeShort(shared);
+        out.writeUTF(path.substring(shared));
+        out.writeBoolean(directories.get(i));
+        out.writeLong(sizes[i]);
+        out.writeLong(lastModifiedTimes[i]);
+        previous = path;
+      }
+    }
+  }
+
+  /**
+   * Scans the tree again, reusing what has not changed, and returns the changes together with the new index.
+   *
+   * @throws NoSuchFileException if the root no longer exists.
+   */
+  public Changes rescan(boolean trustDirectoryTimes) throws IOException {
+    Scanner scanner = new Scanner(root, this, trustDirectoryTimes);
+    TreeIndex index = scanner.scan();
+    return new Changes(index, scanner.added, scanner.removed, scanner.modified);
+  }
+
+  public Path getRoot() {
+    return Paths.get(root.getPath());
+  }
+
+  /**
+   * The number of entries, the root included.
+   */
+  public int entryCount() {
+    return paths.length;
+  }
+
+  /**
+   * The changes found by a rescan. A directory that is added or removed is listed along with everything in it. Only
+   * files are reported as modified.
+   */
+  public static final class Changes {
+    private final TreeIndex index;
+    private final List<Path> added;
+    private final List<Path> removed;
+    private final List<Path> modified;
+
+    Changes(TreeIndex index, List<Path> added, List<Path> removed, List<Path> modified) {
+      this.index = index;
+      this.added = Collections.unmodifiableList(added);
+      this.removed = Collections.unmodifiableList(removed);
+      this.modified = Collections.unmodifiableList(modified);
+    }
+
+    /**
+     * The index of the tree as rescanned.
+     */
+    public TreeIndex index() {
+      return index;
+    }
+
+    public List<Path> added() {
+      return added;
+    }
+
+    public List<Path> removed() {
+      return removed;
+    }
+
+    public List<Path> modified() {
+      return modified;
+    }
+
+    public boolean isEmpty() {
+      return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+    }
+  }
+
+  private static int sharedPrefixLength(String a, String b) {
+    int length = Math.min(a.length(), b.length());
+    int i = 0;
+    while (i < length && a.charAt(i) == b.charAt(i)) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int[] computeSubtreeEnds(String[] paths) {
+    int[] ends = new int[paths.length];
+    Deque<Integer> open = new ArrayDeque<Integer>();
+    for (int i = 0; i < paths.length; i++) {
+      while (!open.isEmpty() && !isAncestor(paths[open.peek()], paths[i])) {
+        ends[open.pop()] = i;
+      }
+      open.push(i);
+    }
+    while (!open.isEmpty()) {
+      ends[open.pop()] = paths.length;
+    }
+    return ends;
+  }
+
+  private static boolean isAncestor(String ancestor, String path) {
+    return ancestor.isEmpty()
+        || (path.length() > ancestor.length() && path.startsWith(ancestor) && path.charAt(ancestor.length()) == '/');
+  }
+
+  private static String nameOf(String path) {
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  /**
+   * Walks the tree depth-first with an explicit stack, comparing it with the old index if there is one.
+   */
+  private static final class Scanner {
+    final File root;
+    final TreeIndex old;
+    final boolean trustDirectoryTimes;
+    final List<Path> added = new ArrayList<Path>();
+    final List<Path> removed = new ArrayList<Path>();
+    final List<Path> modified = new ArrayList<Path>();
+    final Deque<Frame> stack = new ArrayDeque<Frame>();
+
+    int count;
+    String[] paths = new String[1024];
+    long[] sizes = new long[1024];
+    long[] lastModifiedTimes = new long[1024];
+    BitSet directories = new BitSet();
+    int[] subtreeEnds = new int[1024];
+
+    Scanner(File root, TreeIndex old, boolean trustDirectoryTimes) {
+      this.root = root;
+      this.old = old;
+      this.trustDirectoryTimes = trustDirectoryTimes;
+    }
+
+    TreeIndex scan() throws IOException {
+      if (!root.isDirectory()) {
+        if (!root.exists()) {
+          throw new NoSuchFileException(root.toString());
+        }
+        throw new IOException("Not a directory: " + root);
+      }
+      enterDirectory(root, "", old == null ? -1 : 0, root.getCanonicalPath());
+
+      while (!stack.isEmpty()) {
+        Frame frame = stack.peek();
+        if (frame.next == frame.names.length) {
+          subtreeEnds[frame.index] = count;
+          stack.pop();
+          continue;
+        }
+
+        int i = frame.next++;
+        String name = frame.names[i];
+        int oldIndex = frame.oldIndices[i];
+        String path = frame.path.isEmpty() ? name : frame.path + "/" + name;
+        if (trustDirectoryTimes && frame.unchanged && oldIndex >= 0 && !old.directories.get(oldIndex)) {
+          add(path, false, old.sizes[oldIndex], old.lastModifiedTimes[oldIndex]);
+          continue;
+        }
+
+        File file = new File(frame.dir, name);
+        if (file.isDirectory()) {
+          String canonicalPath = file.getCanonicalPath();
+          if (canonicalPath.equals(new File(frame.canonicalPath, name).getPath())) {
+            if (oldIndex >= 0 && !old.directories.get(oldIndex)) {
+              removed.add(resolve(path));
+              oldIndex = -1;
+            }
+            enterDirectory(file, path, oldIndex, canonicalPath);
+            continue;
+          }
+        }
+
+        long lastModified = file.lastModified();
+        if (lastModified == 0 && !file.exists()) {
+          // Gone since the listing.
+          if (oldIndex >= 0) {
+            removeSubtree(oldIndex);
+          }
+          continue;
+        }
+
+        long size = file.length();
+        if (oldIndex >= 0 && old.directories.get(oldIndex)) {
+          removeSubtree(oldIndex);
+          added.add(resolve(path));
+        } else if (oldIndex >= 0) {
+          if (old.sizes[oldIndex] != size || old.lastModifiedTimes[oldIndex] != lastModified) {
+            modified.add(resolve(path));
+          }
+        } else if (old != null) {
+          added.add(resolve(path));
+        }
+        add(path, false, size, lastModified);
+      }
+
+      return new TreeIndex(root, Arrays.copyOf(paths, count), Arrays.copyOf(sizes, count),
+          Arrays.copyOf(lastModifiedTimes, count), directories, Arrays.copyOf(subtreeEnds, count));
+    }
+
+    /**
+     * Records a directory and pushes its frame. Its names come from the old index if its time is unchanged.
+     */
+    private void enterDirectory(File dir, String path, int oldIndex, String canonicalPath) throws IOException {
+      if (oldIndex < 0 && old != null) {
+        added.add(resolve(path));
+      }
+
+      long lastModified = dir.lastModified();
+      int index = add(path, true, 0, lastModified);
+
+      List<Integer> oldChildren = new ArrayList<Integer>();
+      if (oldIndex >= 0) {
+        for (int c = oldIndex + 1; c < old.subtreeEnds[oldIndex]; c = old.subtreeEnds[c]) {
+          oldChildren.add(c);
+        }
+      }
+
+      boolean unchanged = oldIndex >= 0 && old.lastModifiedTimes[oldIndex] == lastModified;
+      String[] names;
+      if (unchanged) {
+        names = new String[oldChildren.size()];
+        for (int i = 0; i < names.length; i++) {
+          names[i] = nameOf(old.paths[oldChildren.get(i)]);
+        }
+      } else {
+        names = dir.list();
+        if (names == null) {
+          throw new AccessDeniedException(dir.toString());
+        }
+        Arrays.sort(names);
+      }
+
+      // Both lists are sorted by name, so they are matched up in one pass.
+      int[] oldIndices = new int[names.length];
+      int o = 0;
+      for (int i = 0; i < names.length; i++) {
+        while (o < oldChildren.size() && nameOf(old.paths[oldChildren.get(o)]).compareTo(names[i]) < 0) {
+          removeSubtree(oldChildren.get(o++));
+        }
+        if (o < oldChildren.size() && nameOf(old.paths[oldChildren.get(o)]).equals(names[i])) {
+          oldIndices[i] = oldChildren.get(o++);
+        } else {
+          oldIndices[i] = -1;
+        }
+      }
+      while (o < oldChildren.size()) {
+        removeSubtree(oldChildren.get(o++));
+      }
+
+      stack.push(new Frame(dir, path, canonicalPath, index, names, oldIndices, unchanged));
+    }
+
+    private void removeSubtree(int oldIndex) {
+      for (int i = oldIndex; i < old.subtreeEnds[oldIndex]; i++) {
+        removed.add(resolve(old.paths[i]));
+      }
+    }
+
+    private int add(String path, boolean isDirectory, long size, long lastModified) {
+      if (count == paths.length) {
+        int capacity = count * 2;
+        paths = Arrays.copyOf(paths, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        lastModifiedTimes = Arrays.copyOf(lastModifiedTimes, capacity);
+        subtreeEnds = Arrays.copyOf(subtreeEnds, capacity);
+      }
+      int index = count++;
+      paths[index] = path;
+      sizes[index] = size;
+      lastModifiedTimes[index] = lastModified;
+      subtreeEnds[index] = index + 1;
+      if (isDirectory) {
+        directories.set(index);
+      }
+      return index;
+    }
+
+    private Path resolve(String path) {
+      return Paths.get(path.isEmpty() ? root.getPath() : new File(root, path).getPath());
+    }
+  }
+
+  private static final class Frame {
+    final File dir;
+    final String path;
+    final String canonicalPath;
+    final int index;
+    final String[] names;
+    final int[] oldIndices;
+    final boolean unchanged;
+    int next;
+
+    Frame(File dir, String path, String canonicalPath, int index, String[] names, int[] oldIndices,
+        boolean unchanged) {
+      this.dir = dir;
+      this.path = path;
+      this.canonicalPath = canonicalPath;
+      this.index = index;
+      this.names = names;
+      this.oldIndices = oldIndices;
+      this.unchanged = unchanged;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsynchronousFileChannelTest extends TestBase {
+  Path base;
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    base = Paths.get(tempDir.getAbsolutePath());
+  }
+
+  @Test
+  public void futures() throws Exception {
+    Path test = base.resolve("test");
+    byte[] data = "Hello, world!".getBytes("UTF-8");
+    try (AsynchronousFileChannel ch = AsynchronousFileChannel.open(test, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+      assertEquals(data.length, (int) ch.write(ByteBuffer.wrap(data), 0).get());
+      assertEquals(data.length, ch.size());
+
+      ByteBuffer buffer = ByteBuffer.allocate(5);
+      assertEquals(5, (int) ch.read(buffer, 7).get());
+      assertArrayEquals("world".getBytes("UTF-8"), buffer.array());
+      assertEquals(-1, (int) ch.read(ByteBuffer.allocate(1), 100).get());
+
+      FileLock lock = ch.lock().get();
+      assertTrue(lock.isValid());
+      lock.release();
+
+      ch.truncate(5);
+      assertEquals(5, ch.size());
+    }
+  }
+
+  @Test
+  public void completionHandlers() throws Exception {
+    Path test = base.resolve("test");
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try (AsynchronousFileChannel ch = AsynchronousFileChannel.open(test,
+        new HashSet<>(Arrays.asList(StandardOpenOption.CREATE, StandardOpenOption.WRITE)), executor)) {
+      final CountDownLatch latch = new CountDownLatch(10);
+      final AtomicReference<Throwable> failure = new AtomicReference<>();
+      CompletionHandler<Integer, Integer> handler = new CompletionHandler<Integer, Integer>() {
+        @Override
+        public void completed(Integer result, Integer attachment) {
+          if (result != 1) {
+            failure.set(new AssertionError("Wrote " + result + " bytes at " + attachment));
+          }
+          latch.countDown();
+        }
+
+        @Override
+        public void failed(Throwable exc, Integer attachment) {
+          failure.set(exc);
+          latch.countDown();
+        }
+      };
+      for (int i = 0; i < 10; i++) {
+        ch.write(ByteBuffer.wrap(new byte[] {(byte) ('0' + i)}), i, i, handler);
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      assertEquals(null, failure.get());
+      assertEquals(10, ch.size());
+
+      try {
+        ch.read(ByteBuffer.allocate(1), 0, null, handler);
+        fail("Expected NonReadableChannelException");
+      } catch (NonReadableChannelException e) {
+        // Expected.
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void openMissingFile() throws IOException {
+    try {
+      AsynchronousFileChannel.open(base.resolve("missing"), StandardOpenOption.READ);
+      fail("Expected NoSuchFileException");
+    } catch (NoSuchFileException e) {
+      // Expected.
+    }
+  }
+
+  @Test(expected = ExecutionException.class)
+  public void writeAfterClose() throws Exception {
+    Path test = base.resolve("test");
+    AsynchronousFileChannel ch = AsynchronousFileChannel.open(test, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+    ch.close();
+    ch.write(ByteBuffer.allocate(1), 0).get();
+  }
+
+  @Test(expected = ExecutionException.class)
+  public void readAfterClose() throws Exception {
+    Path test = base.resolve("test");
+    AsynchronousFileChannel.open(test, StandardOpenOption.CREATE, StandardOpenOption.WRITE).close();
+    AsynchronousFileChannel ch = AsynchronousFileChannel.open(test, StandardOpenOption.READ);
+    ch.close();
+    ch.read(ByteBuffer.allocate(1), 0).get();
+  }
+}
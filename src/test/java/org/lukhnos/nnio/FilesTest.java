@@ -23,23 +23,37 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertArrayEquals;
@@ -67,6 +81,38 @@ public class FilesTest extends TestBase {
     Files.delete(test2);
   }
 
+  @Test
+  public void copyFromFileInputStream() throws IOException {
+    Path test1 = base.resolve("test1");
+    Path test2 = base.resolve("test2");
+    Files.copy(new ByteArrayInputStream(data), test1);
+    try (InputStream in = new FileInputStream(test1.toFile())) {
+      assertEquals(data[0], in.read());
+      Files.copy(in, test2);
+      assertEquals(-1, in.read());
+    }
+    assertArrayEquals(Arrays.copyOfRange(data, 1, data.length), getFileContent(test2));
+  }
+
+  @Test
+  public void copyWithOptions() throws IOException {
+    Path test1 = base.resolve("test1");
+    Path test2 = base.resolve("test2");
+    Files.copy(new ByteArrayInputStream(data), test1);
+    Files.createFile(test2);
+    try {
+      Files.copy(test1, test2);
+      fail();
+    } catch (FileAlreadyExistsException ignored) {
+      // Expected.
+    }
+
+    assertTrue(test1.toFile().setLastModified(1000000000000L));
+    Files.copy(test1, test2, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    assertArrayEquals(data, getFileContent(test2));
+    assertEquals(1000000000000L, Files.getLastModifiedTime(test2).toMillis());
+  }
+
   @Test
   public void createDirectories() throws IOException {
     Path test1 = base.resolve("baz");
@@ -86,6 +132,46 @@ public class FilesTest extends TestBase {
 
     Files.createDirectories(test2);
     assertTrue(Files.exists(test2));
+
+    // Ancestors removed behind its back are created again.
+    removeFile(base.resolve("foo").toFile());
+    Files.createDirectories(test2);
+    assertTrue(Files.isDirectory(test2));
+
+    Path test3 = test2.resolve("file");
+    Files.createFile(test3);
+    try {
+      Files.createDirectories(test3.resolve("dir"));
+      fail();
+    } catch (FileSystemException ignored) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void createDirectoriesConcurrently() throws Exception {
+    final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 64; i++) {
+              Files.createDirectories(base.resolve("s" + (i % 4)).resolve("t" + (i % 8)).resolve("u" + i));
+            }
+          } catch (Throwable e) {
+            failures.add(e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(failures.toString(), failures.isEmpty());
+    assertTrue(Files.isDirectory(base.resolve("s3").resolve("t7").resolve("u63")));
   }
 
   @Test
@@ -156,6 +242,18 @@ public class FilesTest extends TestBase {
     } catch (NoSuchFileException ignored) {
       // Expected.
     }
+
+    Path dir = base.resolve("foo");
+    Files.createDirectories(dir.resolve("bar"));
+    try {
+      Files.delete(dir);
+      fail();
+    } catch (DirectoryNotEmptyException ignored) {
+      // Expected.
+    }
+    Files.delete(dir.resolve("bar"));
+    Files.delete(dir);
+    assertFalse(Files.exists(dir));
   }
 
   @Test
@@ -195,6 +293,34 @@ public class FilesTest extends TestBase {
     assertFalse(Files.isDirectory(test2));
   }
 
+  @Test
+  public void isSameFile() throws IOException {
+    Path dir = base.resolve("dir");
+    Files.createDirectory(dir);
+    Path file = Files.createFile(dir.resolve("file"));
+    assertTrue(Files.isSameFile(file, dir.resolve("..").resolve("dir").resolve("file")));
+    assertFalse(Files.isSameFile(file, dir));
+
+    // Equal paths are the same file without being looked up.
+    Path missing = base.resolve("missing");
+    assertTrue(Files.isSameFile(missing, base.resolve("missing")));
+    try {
+      Files.isSameFile(missing, file);
+      fail("Expected NoSuchFileException");
+    } catch (NoSuchFileException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void isRegularFile() throws IOException {
+    Path test1 = Files.createTempDirectory(base, "foobar");
+    Path test2 = Files.createTempFile(base, "foobar", ".txt");
+    assertFalse(Files.isRegularFile(test1));
+    assertTrue(Files.isRegularFile(test2));
+    assertFalse(Files.isRegularFile(base.resolve("nonexistent")));
+  }
+
   @Test
   public void isReadable() throws IOException {
     Path test1 = Files.createTempDirectory(base, "foobar");
@@ -229,7 +355,11 @@ public class FilesTest extends TestBase {
     } catch (FileAlreadyExistsException ignored) {
       // Expected.
     }
+    Files.move(test2, test3, StandardCopyOption.REPLACE_EXISTING);
+    assertFalse(Files.exists(test2));
+    assertArrayEquals(data, getFileContent(test3));
     Files.delete(test3);
+    Files.copy(new ByteArrayInputStream(data), test2);
     Files.move(test2, test3);
     assertArrayEquals(data, getFileContent(test3));
     Files.delete(test3);
@@ -290,6 +420,74 @@ public class FilesTest extends TestBase {
     assertTrue(pathSet.contains(test2));
   }
 
+  @Test
+  public void newDirectoryStreamWithGlob() throws IOException {
+    for (String name : Arrays.asList("a.log", "b.log", "c.txt", "prefix-1", "x{y}")) {
+      Files.createFile(base.resolve(name));
+    }
+
+    assertEquals(new HashSet<>(Arrays.asList("a.log", "b.log")), listNames(base, "*.log"));
+    assertEquals(new HashSet<>(Arrays.asList("prefix-1")), listNames(base, "prefix*"));
+    assertEquals(new HashSet<>(Arrays.asList("a.log", "c.txt")), listNames(base, "{a,c}.*"));
+    assertEquals(new HashSet<>(Arrays.asList("b.log", "c.txt")), listNames(base, "[!a].[lt]*"));
+    assertEquals(new HashSet<>(Arrays.asList("x{y}")), listNames(base, "x\\{y}"));
+    assertEquals(new HashSet<String>(), listNames(base, "a.lo"));
+  }
+
+  @Test
+  public void newDirectoryStreamWithFilter() throws IOException {
+    Files.createDirectory(base.resolve("dir"));
+    Files.createFile(base.resolve("file"));
+    DirectoryStream.Filter<Path> dirsOnly = new DirectoryStream.Filter<Path>() {
+      @Override
+      public boolean accept(Path entry) {
+        return Files.isDirectory(entry);
+      }
+    };
+
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(base, dirsOnly)) {
+      for (Path p : stream) {
+        paths.add(p);
+      }
+      try {
+        stream.iterator();
+        fail("Expected IllegalStateException");
+      } catch (IllegalStateException e) {
+        // Expected.
+      }
+    }
+    assertEquals(Arrays.asList(base.resolve("dir")), paths);
+
+    DirectoryStream.Filter<Path> failing = new DirectoryStream.Filter<Path>() {
+      @Override
+      public boolean accept(Path entry) throws IOException {
+        throw new IOException("filter failed");
+      }
+    };
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(base, failing)) {
+      stream.iterator().hasNext();
+      fail("Expected DirectoryIteratorException");
+    } catch (DirectoryIteratorException e) {
+      assertEquals("filter failed", e.getCause().getMessage());
+    }
+
+    try {
+      Files.newDirectoryStream(base.resolve("missing"), dirsOnly);
+      fail("Expected NoSuchFileException");
+    } catch (NoSuchFileException e) {
+      // Expected.
+    }
+  }
+
+  private static Set<String> listNames(Path dir, String glob) throws IOException {
+    Set<String> names = new HashSet<>();
+    for (Path p : Files.newDirectoryStream(dir, glob)) {
+      names.add(p.getFileName().toString());
+    }
+    return names;
+  }
+
   @Test
   public void newInputStream() throws IOException {
     Path test = base.resolve("test");
@@ -313,6 +511,83 @@ public class FilesTest extends TestBase {
     assertArrayEquals(data, getFileContent(test));
   }
 
+  @Test
+  public void newByteChannelWithOptions() throws IOException {
+    Path test = base.resolve("test");
+    try {
+      Files.newByteChannel(test, StandardOpenOption.WRITE);
+      fail("Expected NoSuchFileException");
+    } catch (NoSuchFileException e) {
+      // Expected.
+    }
+    try {
+      Files.newByteChannel(test);
+      fail("Expected NoSuchFileException");
+    } catch (NoSuchFileException e) {
+      // Expected.
+    }
+    try {
+      Files.newByteChannel(base.resolve("missing").resolve("test"), StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.WRITE);
+      fail("Expected NoSuchFileException");
+    } catch (NoSuchFileException e) {
+      // Expected.
+    }
+
+    try (SeekableByteChannel ch = Files.newByteChannel(test, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+        StandardOpenOption.SYNC)) {
+      ch.write(ByteBuffer.wrap(data));
+    }
+    assertArrayEquals(data, getFileContent(test));
+    try {
+      Files.newByteChannel(test, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      fail("Expected FileAlreadyExistsException");
+    } catch (FileAlreadyExistsException e) {
+      // Expected.
+    }
+
+    try (SeekableByteChannel ch = Files.newByteChannel(test, StandardOpenOption.APPEND, StandardOpenOption.DSYNC)) {
+      ch.write(ByteBuffer.wrap(data));
+    }
+    assertEquals(data.length * 2, Files.size(test));
+
+    try (SeekableByteChannel ch = Files.newByteChannel(test, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      assertEquals(0, ch.size());
+    }
+
+    try {
+      Files.newByteChannel(test, StandardOpenOption.APPEND, StandardOpenOption.READ);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+
+    Path temp = base.resolve("temp");
+    try (SeekableByteChannel ch = Files.newByteChannel(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE)) {
+      ch.write(ByteBuffer.wrap(data));
+    }
+    assertFalse(Files.exists(temp));
+  }
+
+  @Test
+  public void newOutputStreamWithOptions() throws IOException {
+    Path test = base.resolve("test");
+    try (OutputStream stream = Files.newOutputStream(test, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+      stream.write(data);
+    }
+    try (OutputStream stream = Files.newOutputStream(test, StandardOpenOption.APPEND)) {
+      stream.write(data);
+    }
+    assertEquals(data.length * 2, Files.size(test));
+
+    try (OutputStream stream = Files.newOutputStream(test, StandardOpenOption.TRUNCATE_EXISTING)) {
+      stream.write(data);
+    }
+    assertArrayEquals(data, getFileContent(test));
+  }
+
   @Test
   public void notExists() throws IOException {
     Path test = base.resolve("foobar.txt");
@@ -326,6 +601,25 @@ public class FilesTest extends TestBase {
     Path test = base.resolve("foobar.txt");
     Files.createFile(test);
     assertTrue(Files.readAttributes(test, BasicFileAttributes.class).lastModifiedTime().toMillis() > 0);
+
+    Files.copy(new ByteArrayInputStream(data), test, StandardCopyOption.REPLACE_EXISTING);
+    BasicFileAttributes attrs = Files.readAttributes(test, BasicFileAttributes.class);
+    assertEquals(data.length, attrs.size());
+    assertTrue(attrs.isRegularFile());
+    assertFalse(attrs.isDirectory());
+    assertFalse(attrs.isSymbolicLink());
+    assertFalse(attrs.isOther());
+
+    attrs = Files.readAttributes(base, BasicFileAttributes.class);
+    assertTrue(attrs.isDirectory());
+    assertFalse(attrs.isRegularFile());
+
+    try {
+      Files.readAttributes(base.resolve("nonexistent"), BasicFileAttributes.class);
+      fail();
+    } catch (NoSuchFileException ignored) {
+      // Expected.
+    }
   }
 
   @Before
@@ -352,6 +646,73 @@ public class FilesTest extends TestBase {
     assertArrayEquals(data, getFileContent(test));
   }
 
+  @Test
+  public void walkFileTreeWithResults() throws IOException {
+    final Path a = base.resolve("a");
+    final Path b = base.resolve("b");
+    Files.createDirectories(a.resolve("sub"));
+    Files.createDirectories(b);
+    for (String name : Arrays.asList("1", "2", "3")) {
+      Files.createFile(a.resolve(name));
+      Files.createFile(b.resolve(name));
+    }
+
+    // SKIP_SIBLINGS from visitFile stops the listing of that directory, but its postVisitDirectory is still called.
+    final List<Path> visited = new ArrayList<>();
+    final List<Path> postVisited = new ArrayList<>();
+    Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        visited.add(file);
+        return file.getParent().equals(a) ? FileVisitResult.SKIP_SIBLINGS : FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+        postVisited.add(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    int inA = 0;
+    for (Path p : visited) {
+      if (p.getParent().equals(a)) {
+        inA++;
+      }
+    }
+    assertEquals(1, inA);
+    assertTrue(postVisited.contains(a));
+    assertTrue(postVisited.contains(base));
+
+    // TERMINATE stops the walk at the first file.
+    final List<Path> files = new ArrayList<>();
+    Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        files.add(file);
+        return FileVisitResult.TERMINATE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+        fail("Walk should have terminated");
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    assertEquals(1, files.size());
+
+    // At maxDepth, directories are visited as files, with their attributes.
+    final Set<Path> shallow = new HashSet<>();
+    Files.walkFileTree(base, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        assertTrue(attrs.isDirectory());
+        shallow.add(file);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    assertEquals(new HashSet<>(Arrays.asList(a, b)), shallow);
+  }
+
   @Test
   public void walkFileTree() throws IOException {
     Path test1 = base.resolve("baz");
@@ -372,12 +733,14 @@ public class FilesTest extends TestBase {
 
       @Override
       public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        assertTrue(attrs.isDirectory());
         pathSet.add(dir);
         return FileVisitResult.CONTINUE;
       }
 
       @Override
       public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        assertTrue(attrs.isRegularFile());
         pathSet.add(file);
         return FileVisitResult.CONTINUE;
       }
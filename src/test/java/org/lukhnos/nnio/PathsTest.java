@@ -22,8 +22,10 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.FileSystems;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
@@ -54,6 +56,142 @@ public class PathsTest extends TestBase {
     assertEquals("foo" + sp + "bar" + sp + "baz", p.toString());
   }
 
+  @Test
+  public void testPathMatcher() {
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:*.java");
+    assertTrue(matcher.matches(Paths.get("Foo.java")));
+    assertFalse(matcher.matches(Paths.get("src", "Foo.java")));
+    assertFalse(matcher.matches(Paths.get("Foo.class")));
+
+    matcher = FileSystems.getDefault().getPathMatcher("glob:**/*.{java,class}");
+    assertTrue(matcher.matches(Paths.get("src", "main", "Foo.java")));
+    assertTrue(matcher.matches(Paths.get("out", "Foo.class")));
+    assertFalse(matcher.matches(Paths.get("Foo.java")));
+
+    matcher = FileSystems.getDefault().getPathMatcher("glob:src/*");
+    assertTrue(matcher.matches(Paths.get("src", "Foo.java")));
+    assertFalse(matcher.matches(Paths.get("src", "main", "Foo.java")));
+
+    matcher = FileSystems.getDefault().getPathMatcher("regex:.*\\.(java|kt)");
+    assertTrue(matcher.matches(Paths.get("Foo.kt")));
+    assertFalse(matcher.matches(Paths.get("Foo.c")));
+
+    try {
+      FileSystems.getDefault().getPathMatcher("*.java");
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testEquality() {
+    Path p1 = Paths.get("foo", "bar");
+    Path p2 = Paths.get("foo").resolve("bar");
+    assertEquals(p1, p2);
+    assertEquals(p1.hashCode(), p2.hashCode());
+
+    // Equality is lexical.
+    assertFalse(Paths.get("foo", "..", "bar").equals(Paths.get("bar")));
+    assertFalse(Paths.get("bar").equals(Paths.get("bar").toAbsolutePath()));
+  }
+
+  @Test
+  public void testNames() {
+    final String sp = File.separator;
+    Path p = Paths.get("foo", "bar", "baz");
+    assertEquals(3, p.getNameCount());
+    assertEquals(Paths.get("bar"), p.getName(1));
+    assertEquals(Paths.get("bar", "baz"), p.subpath(1, 3));
+    assertEquals(Paths.get("baz"), p.getFileName());
+    assertEquals(Paths.get("foo", "bar"), p.getParent());
+    assertEquals(null, Paths.get("foo").getParent());
+    assertEquals(null, p.getRoot());
+
+    List<String> names = new ArrayList<>();
+    for (Path name : p) {
+      names.add(name.toString());
+    }
+    assertEquals(3, names.size());
+    assertEquals("foo", names.get(0));
+    assertEquals("baz", names.get(2));
+
+    Path abs = Paths.get(tempDir.getAbsolutePath(), "foo");
+    assertTrue(abs.getRoot() != null);
+    assertEquals(null, abs.getRoot().getFileName());
+    assertEquals(null, abs.getRoot().getParent());
+    assertEquals(0, abs.getRoot().getNameCount());
+    assertEquals(abs.getRoot(), abs.getRoot().getRoot());
+    assertEquals(Paths.get(tempDir.getAbsolutePath()), abs.getParent());
+
+    assertEquals(1, Paths.get("").getNameCount());
+    assertEquals("", Paths.get("").getName(0).toString());
+
+    try {
+      p.subpath(2, 2);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testStartsWithAndEndsWith() {
+    Path p = Paths.get("foo", "bar", "baz");
+    assertTrue(p.startsWith(Paths.get("foo")));
+    assertTrue(p.startsWith("foo"));
+    assertTrue(p.startsWith(Paths.get("foo", "bar")));
+    assertFalse(p.startsWith(Paths.get("fo")));
+    assertFalse(p.startsWith(Paths.get("")));
+    assertTrue(p.endsWith(Paths.get("bar", "baz")));
+    assertTrue(p.endsWith("baz"));
+    assertFalse(p.endsWith(Paths.get("az")));
+    assertFalse(p.startsWith(p.toAbsolutePath()));
+
+    Path abs = p.toAbsolutePath();
+    assertTrue(abs.startsWith(abs.getRoot()));
+    assertTrue(abs.endsWith(p));
+    assertFalse(abs.startsWith(p));
+  }
+
+  @Test
+  public void testNormalize() {
+    assertEquals(Paths.get("foo", "baz"), Paths.get("foo", ".", "bar", "..", "baz").normalize());
+    assertEquals(Paths.get("..", "foo"), Paths.get("..", "foo").normalize());
+    assertEquals(Paths.get(""), Paths.get("foo", "..").normalize());
+    assertEquals(Paths.get("..", ".."), Paths.get("foo", "..", "..", "..").normalize());
+
+    Path root = Paths.get(tempDir.getAbsolutePath()).getRoot();
+    assertEquals(root.resolve("foo"), root.resolve("..").resolve("foo").normalize());
+  }
+
+  @Test
+  public void testRelativize() {
+    Path base = Paths.get(tempDir.getAbsolutePath());
+    Path p1 = base.resolve("a").resolve("b");
+    Path p2 = base.resolve("a").resolve("c").resolve("d");
+    assertEquals(Paths.get("..", "c", "d"), p1.relativize(p2));
+    assertEquals(Paths.get("..", "..", "b"), p2.relativize(p1));
+    assertEquals(Paths.get(""), p1.relativize(p1));
+    assertEquals(Paths.get("b"), base.resolve("a").relativize(p1));
+    assertEquals(p2, p1.resolve(p1.relativize(p2)).normalize());
+    assertEquals(Paths.get("bar"), Paths.get("").relativize(Paths.get("bar")));
+
+    try {
+      p1.relativize(Paths.get("a"));
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testResolveSibling() {
+    assertEquals(Paths.get("foo", "baz"), Paths.get("foo", "bar").resolveSibling("baz"));
+    assertEquals(Paths.get("baz"), Paths.get("foo").resolveSibling("baz"));
+    assertEquals(Paths.get("baz"), Paths.get("foo").resolveSibling(Paths.get("baz")));
+  }
+
   @Test
   public void testResolve() throws IOException {
     Path p = Paths.get(tempDir.getAbsolutePath());
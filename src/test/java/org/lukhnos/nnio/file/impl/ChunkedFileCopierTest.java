@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for ChunkedFileCopier, with thresholds small enough to split a small file into several ranges.
+ */
+public class ChunkedFileCopierTest extends TestBase {
+  ForkJoinPool pool;
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    pool = new ForkJoinPool(4);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    pool.shutdown();
+    super.tearDown();
+  }
+
+  @Test
+  public void evenRanges() throws IOException {
+    // Four ranges of 2500 bytes.
+    checkCopy(10000);
+  }
+
+  @Test
+  public void unevenRanges() throws IOException {
+    // Four ranges, the last of them shorter.
+    checkCopy(10037);
+  }
+
+  @Test
+  public void fewerRangesThanThreads() throws IOException {
+    // Two ranges, as each has to be at least 1000 bytes.
+    checkCopy(2999);
+  }
+
+  @Test
+  public void replacesLongerTarget() throws IOException {
+    File target = new File(tempDir, "target");
+    write(target, new byte[20000]);
+    checkCopy(10037);
+  }
+
+  @Test
+  public void failureDeletesTarget() throws IOException {
+    // A directory has a size on most file systems, but cannot be opened for reading.
+    File source = new File(tempDir, "source");
+    File target = new File(tempDir, "target");
+    source.mkdir();
+    try {
+      ChunkedFileCopier.copy(source, target, true, false, pool, 1, 1);
+      fail();
+    } catch (IOException ignored) {
+      // Expected.
+    }
+    assertFalse(target.exists());
+  }
+
+  private void checkCopy(int size) throws IOException {
+    byte[] data = new byte[size];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31 + i / 256);
+    }
+    File source = new File(tempDir, "source");
+    File target = new File(tempDir, "target");
+    write(source, data);
+
+    ChunkedFileCopier.copy(source, target, true, false, pool, 1000, 1000);
+    assertEquals(size, target.length());
+    assertArrayEquals(data, read(target));
+  }
+
+  private static void write(File file, byte[] data) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(data);
+    }
+  }
+
+  private static byte[] read(File file) throws IOException {
+    byte[] data = new byte[(int) file.length()];
+    try (InputStream in = new FileInputStream(file)) {
+      int done = 0;
+      while (done < data.length) {
+        int read = in.read(data, done, data.length - done);
+        if (read < 0) {
+          throw new IOException("File truncated: " + file);
+        }
+        done += read;
+      }
+    }
+    return data;
+  }
+}
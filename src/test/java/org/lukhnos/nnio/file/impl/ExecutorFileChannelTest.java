@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+import org.lukhnos.nnio.channels.CompletionHandler;
+import org.lukhnos.nnio.file.OpenOption;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+import org.lukhnos.nnio.file.StandardOpenOption;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the default executor of ExecutorFileChannel.
+ */
+public class ExecutorFileChannelTest extends TestBase {
+  @Test
+  public void defaultExecutorIsNotWorkerPool() throws Exception {
+    Path path = Paths.get(tempDir.getAbsolutePath()).resolve("test");
+    final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+    final CountDownLatch done = new CountDownLatch(1);
+    try (ExecutorFileChannel channel = ExecutorFileChannel.open(path, new HashSet<OpenOption>(
+        Arrays.<OpenOption>asList(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)), null)) {
+      channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), 0, null, new CompletionHandler<Integer, Object>() {
+        @Override
+        public void completed(Integer result, Object attachment) {
+          thread.set(Thread.currentThread());
+          done.countDown();
+        }
+
+        @Override
+        public void failed(Throwable exc, Object attachment) {
+          done.countDown();
+        }
+      });
+      done.await();
+    }
+    assertNotNull(thread.get());
+    assertFalse(thread.get() instanceof ForkJoinWorkerThread);
+    assertTrue(thread.get().isDaemon());
+  }
+}
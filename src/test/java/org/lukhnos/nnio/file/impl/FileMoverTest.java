@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+import org.lukhnos.nnio.file.AtomicMoveNotSupportedException;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the fallbacks taken when renaming the source fails.
+ */
+public class FileMoverTest extends TestBase {
+  Path source;
+  Path target;
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    Path base = Paths.get(tempDir.getAbsolutePath());
+    source = base.resolve("source");
+    target = base.resolve("target");
+    Files.copy(new ByteArrayInputStream("source".getBytes("UTF-8")), source);
+    Files.copy(new ByteArrayInputStream("target".getBytes("UTF-8")), target);
+  }
+
+  @Test
+  public void atomicMoveKeepsTarget() throws IOException {
+    try {
+      new FailingMover().moveFile(source, target, true, true);
+      fail("Expected AtomicMoveNotSupportedException");
+    } catch (AtomicMoveNotSupportedException e) {
+      // Expected.
+    }
+    assertEquals("source", read(source));
+    assertEquals("target", read(target));
+  }
+
+  @Test
+  public void renameAfterDeletingTarget() throws IOException {
+    // Like File.renameTo on Windows, which does not replace an existing file.
+    final AtomicInteger renames = new AtomicInteger();
+    FileMover mover = new FileMover() {
+      @Override
+      boolean renameSource(File sourceFile, File targetFile) {
+        renames.incrementAndGet();
+        return !targetFile.exists() && super.renameSource(sourceFile, targetFile);
+      }
+    };
+    mover.moveFile(source, target, true, false);
+    assertEquals(2, renames.get());
+    assertFalse(Files.exists(source));
+    assertEquals("source", read(target));
+    assertEquals(1, tempDir.list().length);
+  }
+
+  @Test
+  public void copyFallbackReplacesTarget() throws IOException {
+    new FailingMover().moveFile(source, target, true, false);
+    assertFalse(Files.exists(source));
+    assertEquals("source", read(target));
+    assertEquals(1, tempDir.list().length);
+  }
+
+  private static String read(Path path) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(path, Charset.forName("UTF-8"))) {
+      return reader.readLine();
+    }
+  }
+
+  static class FailingMover extends FileMover {
+    @Override
+    boolean renameSource(File sourceFile, File targetFile) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that IncrementalFileCopier writes only the blocks that changed.
+ */
+public class IncrementalFileCopierTest extends TestBase {
+  private static final int BLOCK = 65536;
+
+  @Test
+  public void writesChangedBlocksOnly() throws IOException {
+    byte[] data = new byte[200000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    File source = new File(tempDir, "source");
+    File target = new File(tempDir, "target");
+
+    write(source, data);
+    assertEquals(data.length, IncrementalFileCopier.update(source, target, false));
+    assertEquals(0, IncrementalFileCopier.update(source, target, false));
+
+    // One byte in the second block.
+    data[100000] = 42;
+    write(source, data);
+    assertEquals(BLOCK, IncrementalFileCopier.update(source, target, false));
+
+    // One byte in the last, partial block.
+    data[199999] = 42;
+    write(source, data);
+    assertEquals(data.length - 3 * BLOCK, IncrementalFileCopier.update(source, target, false));
+
+    // A change in the first block, and a new tail.
+    data[0] = 42;
+    byte[] grown = Arrays.copyOf(data, 300000);
+    write(source, grown);
+    assertEquals(BLOCK + 100000, IncrementalFileCopier.update(source, target, false));
+    assertEquals(grown.length, target.length());
+
+    write(source, Arrays.copyOf(data, 1000));
+    assertEquals(0, IncrementalFileCopier.update(source, target, false));
+    assertEquals(1000, target.length());
+  }
+
+  private static void write(File file, byte[] data) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(data);
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.impl;
+
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for ReadCoalescer.
+ */
+public class ReadCoalescerTest extends TestBase {
+  @Test
+  public void mergesNearbyReads() throws Exception {
+    File file = new File(tempDir, "test");
+    byte[] data = new byte[100000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31);
+    }
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(data);
+    }
+
+    // Hold the threads until all the reads are queued, so that they are batched together.
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    final CountDownLatch start = new CountDownLatch(1);
+    for (int i = 0; i < 2; i++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+
+    // Two groups, one of them spanning a gap, and a read on its own.
+    long[] positions = {0, 10, 5, 3000, 50000, 52000, 90000};
+    int[] lengths = {10, 100, 20, 4000, 1500, 100, 200};
+    try (CountingFileChannel channel = new CountingFileChannel(new RandomAccessFile(file, "r").getChannel())) {
+      ReadCoalescer coalescer = new ReadCoalescer(channel, executor);
+      List<ByteBuffer> buffers = new ArrayList<>();
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < positions.length; i++) {
+        ByteBuffer buffer = ByteBuffer.allocate(lengths[i]);
+        buffers.add(buffer);
+        futures.add(coalescer.read(buffer, positions[i]));
+      }
+      start.countDown();
+
+      for (int i = 0; i < positions.length; i++) {
+        assertEquals(lengths[i], (int) futures.get(i).get());
+        int from = (int) positions[i];
+        assertArrayEquals(Arrays.copyOfRange(data, from, from + lengths[i]), buffers.get(i).array());
+      }
+      assertEquals(3, channel.reads.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Counts the positional reads made through it.
+   */
+  static class CountingFileChannel extends FileChannel {
+    final AtomicInteger reads = new AtomicInteger();
+    private final FileChannel channel;
+
+    CountingFileChannel(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+      reads.incrementAndGet();
+      return channel.read(dst, position);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      return channel.read(dst);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+      return channel.read(dsts, offset, length);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      return channel.write(src);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+      return channel.write(srcs, offset, length);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+      return channel.write(src, position);
+    }
+
+    @Override
+    public long position() throws IOException {
+      return channel.position();
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+      channel.position(newPosition);
+      return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+      return channel.size();
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+      channel.truncate(size);
+      return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+      channel.force(metaData);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+      return channel.transferTo(position, count, target);
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+      return channel.transferFrom(src, position, count);
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+      return channel.map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+      return channel.lock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+      return channel.tryLock(position, size, shared);
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for AttributeTable.
+ */
+public class AttributeTableTest extends TestBase {
+  @Test
+  public void putAndFind() throws IOException {
+    try (AttributeTable table = AttributeTable.newDirect(0)) {
+      exercise(table);
+    }
+  }
+
+  @Test
+  public void mapped() throws IOException {
+    try (AttributeTable table = AttributeTable.newMapped(Paths.get(tempDir.getAbsolutePath()), 0)) {
+      exercise(table);
+    }
+  }
+
+  private void exercise(AttributeTable table) throws IOException {
+    for (int i = 0; i < 10000; i++) {
+      table.put("/dir/file" + i, i, 1000L + i, AttributeTable.REGULAR_FILE);
+    }
+    table.put("/dir/\u6a94\u6848", 7, 8, AttributeTable.OTHER);
+    table.put("/dir/file42", 4242, 0, AttributeTable.DIRECTORY);
+    assertEquals(10001, table.entryCount());
+
+    int entry = table.find("/dir/file9999");
+    assertEquals(9999, table.size(entry));
+    assertEquals(10999, table.lastModifiedTime(entry));
+    assertEquals(AttributeTable.REGULAR_FILE, table.type(entry));
+
+    entry = table.find("/dir/file42");
+    assertEquals(4242, table.size(entry));
+    assertEquals(AttributeTable.DIRECTORY, table.type(entry));
+
+    entry = table.find("/dir/\u6a94\u6848");
+    assertEquals(7, table.size(entry));
+    assertEquals(AttributeTable.OTHER, table.type(entry));
+
+    assertEquals(-1, table.find("/dir/file10000"));
+    assertFalse(table.contains("/dir/"));
+
+    final Set<String> keys = new HashSet<>();
+    final long[] totalSize = new long[1];
+    table.forEach(new AttributeTable.EntryVisitor() {
+      @Override
+      public void visit(CharSequence key, long size, long lastModifiedTime, int type) {
+        keys.add(key.toString());
+        totalSize[0] += size;
+      }
+    });
+    assertEquals(10001, keys.size());
+    assertTrue(keys.contains("/dir/\u6a94\u6848"));
+    assertEquals(9999L * 10000 / 2 - 42 + 4242 + 7, totalSize[0]);
+  }
+
+  @Test
+  public void updateKeepsHandles() throws IOException {
+    try (AttributeTable table = AttributeTable.newDirect(0)) {
+      // 16 slots hold 11 entries before growing.
+      for (int i = 0; i < 11; i++) {
+        table.put("key" + i, i, 0, AttributeTable.REGULAR_FILE);
+      }
+      int entry = table.find("key0");
+      for (int i = 0; i < 11; i++) {
+        table.put("key" + i, 100 + i, 0, AttributeTable.REGULAR_FILE);
+      }
+      assertEquals(entry, table.find("key0"));
+      assertEquals(100, table.size(entry));
+      assertEquals(11, table.entryCount());
+    }
+  }
+
+  @Test
+  public void addTreeAndDirectory() throws IOException {
+    Path root = Paths.get(tempDir.getAbsolutePath(), "root");
+    Files.createDirectories(root.resolve("a"));
+    try (OutputStream out = Files.newOutputStream(root.resolve("a").resolve("1"))) {
+      out.write(new byte[3]);
+    }
+
+    try (AttributeTable table = AttributeTable.newDirect(0)) {
+      table.addTree(root);
+      assertEquals(3, table.entryCount());
+      assertEquals(AttributeTable.DIRECTORY, table.type(table.find(root.toString())));
+      int entry = table.find(root.resolve("a").resolve("1").toString());
+      assertEquals(3, table.size(entry));
+      assertEquals(AttributeTable.REGULAR_FILE, table.type(entry));
+    }
+
+    // A dangling link is listed, but reading its attributes fails as if it had disappeared.
+    java.nio.file.Files.createSymbolicLink(root.resolve("a").resolve("gone").toFile().toPath(),
+        root.resolve("missing").toFile().toPath());
+    try (AttributeTable table = AttributeTable.newDirect(0)) {
+      table.addDirectory(root.resolve("a"));
+      assertEquals(1, table.entryCount());
+      assertTrue(table.contains(root.resolve("a").resolve("1").toString()));
+    }
+  }
+}
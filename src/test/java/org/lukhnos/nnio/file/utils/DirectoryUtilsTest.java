@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+import org.lukhnos.nnio.file.DirectoryStream;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests for DirectoryUtils.
+ */
+public class DirectoryUtilsTest extends TestBase {
+  Path base;
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    base = Paths.get(tempDir.getAbsolutePath());
+  }
+
+  @Test
+  public void newDirectoryStream() throws IOException {
+    for (int i = 0; i < 1000; i++) {
+      Files.createFile(base.resolve("file" + i + (i % 250 == 0 ? ".keep" : ".skip")));
+    }
+
+    FilenameFilter filter = new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.endsWith(".keep");
+      }
+    };
+    Set<Path> paths = new HashSet<>();
+    try (DirectoryStream<Path> stream = DirectoryUtils.newDirectoryStream(base, filter)) {
+      for (Path p : stream) {
+        paths.add(p);
+      }
+    }
+
+    Set<Path> expected = new HashSet<>();
+    for (int i = 0; i < 1000; i += 250) {
+      expected.add(base.resolve("file" + i + ".keep"));
+    }
+    assertEquals(expected, paths);
+  }
+
+  @Test
+  public void list() throws IOException {
+    Files.createDirectory(base.resolve("dir"));
+    for (int i = 0; i < 40; i++) {
+      try (OutputStream out = Files.newOutputStream(base.resolve("file" + i))) {
+        out.write(new byte[i]);
+      }
+    }
+
+    DirectoryListing listing = DirectoryUtils.list(base);
+    assertEquals(base, listing.getDirectory());
+    assertEquals(41, listing.count());
+    assertEquals(41, listing.names().length);
+    assertEquals(1, listing.directories().cardinality());
+    assertEquals(40, listing.regularFiles().cardinality());
+
+    long total = 0;
+    for (int i = 0; i < listing.count(); i++) {
+      Path path = listing.resolve(i);
+      assertEquals(base.resolve(listing.name(i)), path);
+      assertEquals(Files.isDirectory(path), listing.isDirectory(i));
+      assertEquals(Files.getLastModifiedTime(path).toMillis(), listing.lastModifiedTime(i));
+      assertFalse(listing.isOther(i));
+      if (listing.isRegularFile(i)) {
+        assertEquals(Files.size(path), listing.size(i));
+        total += listing.sizes()[i];
+      }
+    }
+    assertEquals(39 * 40 / 2, total);
+  }
+
+  @Test(expected = NoSuchFileException.class)
+  public void listMissingDirectory() throws IOException {
+    DirectoryUtils.list(base.resolve("missing"));
+  }
+}
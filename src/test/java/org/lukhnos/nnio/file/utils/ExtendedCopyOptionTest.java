@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+import org.lukhnos.nnio.file.FileAlreadyExistsException;
+import org.lukhnos.nnio.file.FileSystemException;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+import org.lukhnos.nnio.file.StandardCopyOption;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the nnio-specific copy modes.
+ */
+public class ExtendedCopyOptionTest extends TestBase {
+  Path base;
+  byte[] data;
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    base = Paths.get(tempDir.getAbsolutePath());
+    data = "hello, world".getBytes("UTF-8");
+  }
+
+  @Test
+  public void recursiveCopy() throws IOException {
+    Path src = base.resolve("src");
+    Path deep = src.resolve("a").resolve("b").resolve("c");
+    Files.createDirectories(deep);
+    Files.createDirectories(src.resolve("empty"));
+    for (int i = 0; i < 100; i++) {
+      Files.copy(new ByteArrayInputStream(data), src.resolve("file" + i));
+    }
+    Files.copy(new ByteArrayInputStream(data), deep.resolve("leaf"));
+    assertTrue(deep.resolve("leaf").toFile().setLastModified(1000000000000L));
+    assertTrue(deep.toFile().setLastModified(1200000000000L));
+
+    Path dst = base.resolve("dst");
+    Files.copy(src, dst, ExtendedCopyOption.RECURSIVE);
+    for (int i = 0; i < 100; i++) {
+      assertArrayEquals(data, getFileContent(dst.resolve("file" + i)));
+    }
+    Path copiedDeep = dst.resolve("a").resolve("b").resolve("c");
+    assertArrayEquals(data, getFileContent(copiedDeep.resolve("leaf")));
+    assertEquals(1000000000000L, Files.getLastModifiedTime(copiedDeep.resolve("leaf")).toMillis());
+    assertEquals(1200000000000L, Files.getLastModifiedTime(copiedDeep).toMillis());
+    assertTrue(Files.isDirectory(dst.resolve("empty")));
+
+    try {
+      Files.copy(src, dst, ExtendedCopyOption.RECURSIVE);
+      fail();
+    } catch (FileAlreadyExistsException ignored) {
+      // Expected.
+    }
+
+    Files.copy(new ByteArrayInputStream(new byte[0]), src.resolve("file0"), StandardCopyOption.REPLACE_EXISTING);
+    Files.copy(src, dst, ExtendedCopyOption.RECURSIVE, StandardCopyOption.REPLACE_EXISTING);
+    assertArrayEquals(new byte[0], getFileContent(dst.resolve("file0")));
+  }
+
+  @Test
+  public void recursiveCopySkipsDirectoryLinks() throws IOException {
+    Path src = base.resolve("src");
+    Files.createDirectories(src.resolve("a"));
+    Files.copy(new ByteArrayInputStream(data), src.resolve("a").resolve("file"));
+    java.nio.file.Files.createSymbolicLink(src.resolve("a").resolve("loop").toFile().toPath(),
+        src.toFile().toPath());
+
+    Path dst = base.resolve("dst");
+    Files.copy(src, dst, ExtendedCopyOption.RECURSIVE);
+    assertArrayEquals(data, getFileContent(dst.resolve("a").resolve("file")));
+    assertFalse(Files.exists(dst.resolve("a").resolve("loop")));
+  }
+
+  @Test
+  public void recursiveCopyIntoItself() throws IOException {
+    Path src = base.resolve("src");
+    Files.createDirectories(src.resolve("x"));
+    try {
+      Files.copy(src, src.resolve("x").resolve("copy"), ExtendedCopyOption.RECURSIVE);
+      fail();
+    } catch (FileSystemException ignored) {
+      // Expected.
+    }
+    assertFalse(Files.exists(src.resolve("x").resolve("copy")));
+  }
+
+  @Test
+  public void chunkedCopy() throws IOException {
+    Path test1 = base.resolve("test1");
+    Path test2 = base.resolve("test2");
+    Files.copy(new ByteArrayInputStream(data), test1);
+    Files.copy(test1, test2, ExtendedCopyOption.CHUNKED);
+    assertArrayEquals(data, getFileContent(test2));
+
+    try {
+      Files.copy(test1, test2, ExtendedCopyOption.CHUNKED);
+      fail();
+    } catch (FileAlreadyExistsException ignored) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void incrementalCopy() throws IOException {
+    byte[] large = new byte[200000];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte) i;
+    }
+    Path test1 = base.resolve("test1");
+    Path test2 = base.resolve("test2");
+    Files.copy(new ByteArrayInputStream(large), test1);
+
+    Files.copy(test1, test2, ExtendedCopyOption.INCREMENTAL);
+    assertArrayEquals(large, getFileContent(test2));
+
+    large[100000] = 42;
+    byte[] grown = Arrays.copyOf(large, 300000);
+    Files.copy(new ByteArrayInputStream(grown), test1, StandardCopyOption.REPLACE_EXISTING);
+    Files.copy(test1, test2, ExtendedCopyOption.INCREMENTAL);
+    assertArrayEquals(grown, getFileContent(test2));
+
+    byte[] shrunk = Arrays.copyOf(large, 1000);
+    Files.copy(new ByteArrayInputStream(shrunk), test1, StandardCopyOption.REPLACE_EXISTING);
+    Files.copy(test1, test2, ExtendedCopyOption.INCREMENTAL);
+    assertArrayEquals(shrunk, getFileContent(test2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void incrementalDirectoryCopy() throws IOException {
+    Path src = base.resolve("src");
+    Files.createDirectory(src);
+    Files.copy(src, base.resolve("dst"), ExtendedCopyOption.RECURSIVE, ExtendedCopyOption.INCREMENTAL);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void directoryCopyWithoutRecursive() throws IOException {
+    Path src = base.resolve("src");
+    Files.createDirectory(src);
+    Files.copy(src, base.resolve("dst"));
+  }
+
+  private byte[] getFileContent(Path path) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (InputStream fis = Files.newInputStream(path)) {
+      int c;
+      while ((c = fis.read()) != -1) {
+        baos.write(c);
+      }
+    }
+    return baos.toByteArray();
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+import org.lukhnos.nnio.channels.AsynchronousFileChannel;
+import org.lukhnos.nnio.channels.CompletionHandler;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.OpenOption;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+import org.lukhnos.nnio.file.StandardOpenOption;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the nnio-specific open options.
+ */
+public class ExtendedOpenOptionTest extends TestBase {
+  @Test
+  public void coalesceReads() throws Exception {
+    Path test = Paths.get(tempDir.getAbsolutePath(), "test");
+    final byte[] data = new byte[100000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31);
+    }
+    Files.copy(new ByteArrayInputStream(data), test);
+
+    // Hold the only thread until all the reads are queued, so that they are served as one batch.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    final CountDownLatch start = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+
+    long[] positions = {0, 10, 5, 3000, 99999, 99990, 50000, 52000, 200000, 1000};
+    int[] lengths = {10, 100, 20, 4000, 1, 100, 1500, 100, 10, 0};
+    try (AsynchronousFileChannel ch = AsynchronousFileChannel.open(test,
+        new HashSet<OpenOption>(Arrays.asList(StandardOpenOption.READ, ExtendedOpenOption.COALESCE_READS)),
+        executor)) {
+      final CountDownLatch done = new CountDownLatch(positions.length);
+      final AtomicInteger mismatches = new AtomicInteger();
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < positions.length; i++) {
+        final long position = positions[i];
+        final ByteBuffer buffer = ByteBuffer.allocate(lengths[i]);
+        ch.read(buffer, position, null, new CompletionHandler<Integer, Object>() {
+          @Override
+          public void completed(Integer result, Object attachment) {
+            int expected = position >= data.length ? -1 : (int) Math.min(buffer.capacity(), data.length - position);
+            if (buffer.capacity() == 0) {
+              expected = 0;
+            }
+            if (result != expected || (result > 0 && !Arrays.equals(
+                Arrays.copyOfRange(data, (int) position, (int) position + result),
+                Arrays.copyOf(buffer.array(), result)))) {
+              mismatches.incrementAndGet();
+            }
+            done.countDown();
+          }
+
+          @Override
+          public void failed(Throwable exc, Object attachment) {
+            mismatches.incrementAndGet();
+            done.countDown();
+          }
+        });
+        futures.add(ch.read(ByteBuffer.allocate(lengths[i]), positions[i]));
+      }
+
+      start.countDown();
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      assertEquals(0, mismatches.get());
+      assertEquals(10, (int) futures.get(0).get());
+      assertEquals(10, (int) futures.get(5).get());
+      assertEquals(-1, (int) futures.get(8).get());
+      assertEquals(0, (int) futures.get(9).get());
+
+      ByteBuffer buffer = ByteBuffer.allocate(4000);
+      assertEquals(4000, (int) ch.read(buffer, 3000).get());
+      assertArrayEquals(Arrays.copyOfRange(data, 3000, 7000), buffer.array());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
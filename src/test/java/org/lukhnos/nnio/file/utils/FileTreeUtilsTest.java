@@ -0,0 +1,277 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+import org.lukhnos.nnio.file.DirectoryStream;
+import org.lukhnos.nnio.file.FileVisitResult;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.NoSuchFileException;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+import org.lukhnos.nnio.file.SimpleFileVisitor;
+import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for FileTreeUtils.
+ */
+public class FileTreeUtilsTest extends TestBase {
+  Path base;
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    base = Paths.get(tempDir.getAbsolutePath());
+  }
+
+  @Test
+  public void deleteRecursively() throws IOException {
+    Path root = base.resolve("root");
+    Path deep = root.resolve("a").resolve("b").resolve("c");
+    Files.createDirectories(deep);
+    Files.createDirectories(root.resolve("empty"));
+    for (int i = 0; i < 200; i++) {
+      Files.createFile(root.resolve("file" + i));
+    }
+    Files.createFile(deep.resolve("leaf"));
+
+    FileTreeUtils.deleteRecursively(root);
+    assertFalse(Files.exists(root));
+    assertTrue(Files.exists(base));
+
+    Path file = base.resolve("file");
+    Files.createFile(file);
+    FileTreeUtils.deleteRecursively(file);
+    assertFalse(Files.exists(file));
+
+    try {
+      FileTreeUtils.deleteRecursively(file);
+      fail();
+    } catch (NoSuchFileException ignored) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void walkFileTreeInParallel() throws IOException {
+    final Set<Path> expected = new HashSet<>();
+    expected.add(base);
+    for (int i = 0; i < 8; i++) {
+      Path dir = base.resolve("dir" + i);
+      for (int j = 0; j < 8; j++) {
+        Path sub = dir.resolve("sub" + j);
+        Files.createDirectories(sub);
+        Path file = Files.createFile(sub.resolve("file"));
+        expected.add(dir);
+        expected.add(sub);
+        expected.add(file);
+      }
+    }
+
+    final Set<Path> visited = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+    final Set<Path> postVisited = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+    FileTreeUtils.walkFileTreeInParallel(base, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        assertTrue(attrs.isDirectory());
+        visited.add(dir);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        assertTrue(attrs.isRegularFile());
+        assertTrue(visited.contains(file.getParent()));
+        visited.add(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+        for (Path p : visited) {
+          if (p.getParent() != null && p.getParent().equals(dir)) {
+            assertTrue(!Files.isDirectory(p) || postVisited.contains(p));
+          }
+        }
+        postVisited.add(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    assertEquals(expected, visited);
+    assertTrue(postVisited.contains(base));
+
+    try {
+      FileTreeUtils.walkFileTreeInParallel(base, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+          throw new IOException("visitor failed");
+        }
+      });
+      fail();
+    } catch (IOException e) {
+      assertEquals("visitor failed", e.getMessage());
+    }
+  }
+
+  @Test
+  public void walkAndFind() throws IOException {
+    Path a = base.resolve("a");
+    Path skipped = base.resolve("skipped");
+    Files.createDirectories(a.resolve("b"));
+    Files.createDirectories(skipped);
+    Path file1 = Files.createFile(a.resolve("1.txt"));
+    Path file2 = Files.createFile(a.resolve("b").resolve("2.txt"));
+    Files.createFile(skipped.resolve("3.txt"));
+
+    List<Path> all = new ArrayList<>();
+    try (DirectoryStream<Path> stream = FileTreeUtils.walk(base)) {
+      for (Path p : stream) {
+        all.add(p);
+      }
+    }
+    assertEquals(7, all.size());
+    assertEquals(base, all.get(0));
+    assertTrue(all.indexOf(a) < all.indexOf(file1));
+    assertTrue(all.indexOf(a.resolve("b")) < all.indexOf(file2));
+
+    Set<Path> shallow = new HashSet<>();
+    try (DirectoryStream<Path> stream = FileTreeUtils.walk(base, 1)) {
+      for (Path p : stream) {
+        shallow.add(p);
+      }
+    }
+    assertEquals(new HashSet<>(Arrays.asList(base, a, skipped)), shallow);
+
+    AttributeFilter textFiles = new AttributeFilter() {
+      @Override
+      public boolean accept(Path path, BasicFileAttributes attrs) {
+        return attrs.isRegularFile() && path.toString().endsWith(".txt");
+      }
+    };
+    AttributeFilter notSkipped = new AttributeFilter() {
+      @Override
+      public boolean accept(Path path, BasicFileAttributes attrs) {
+        assertTrue(attrs.isDirectory());
+        return !path.getFileName().toString().equals("skipped");
+      }
+    };
+    Set<Path> found = new HashSet<>();
+    try (DirectoryStream<Path> stream = FileTreeUtils.find(base, Integer.MAX_VALUE, textFiles, notSkipped)) {
+      for (Path p : stream) {
+        found.add(p);
+      }
+    }
+    assertEquals(new HashSet<>(Arrays.asList(file1, file2)), found);
+
+    // Nothing is listed past what the iterator has been asked for.
+    try (DirectoryStream<Path> stream = FileTreeUtils.walk(base)) {
+      Iterator<Path> iterator = stream.iterator();
+      assertEquals(base, iterator.next());
+      FileTreeUtils.deleteRecursively(a);
+      FileTreeUtils.deleteRecursively(skipped);
+      assertFalse(iterator.hasNext());
+    }
+
+    Set<Path> listed = new HashSet<>();
+    Files.createDirectories(a);
+    try (DirectoryStream<Path> stream = FileTreeUtils.list(base)) {
+      for (Path p : stream) {
+        listed.add(p);
+      }
+    }
+    assertEquals(Collections.singleton(a), listed);
+  }
+
+  @Test
+  public void diskUsage() throws IOException {
+    Path a = base.resolve("a");
+    Path b = a.resolve("b");
+    Files.createDirectories(b);
+    write(base.resolve("1"), 100);
+    write(a.resolve("2"), 20);
+    write(b.resolve("3"), 3);
+    write(b.resolve("empty"), 0);
+
+    java.nio.file.Files.createSymbolicLink(a.resolve("loop").toFile().toPath(), base.toFile().toPath());
+    assertEquals(new DiskUsage(123, 4, 3), FileTreeUtils.diskUsage(base));
+    assertTrue(FileTreeUtils.diskUsage(base).isComplete());
+    assertEquals(new DiskUsage(100, 1, 0), FileTreeUtils.diskUsage(base.resolve("1")));
+
+    Map<Path, DiskUsage> breakdown = new HashMap<>();
+    DiskUsage usage = FileTreeUtils.diskUsage(a, breakdown, new ForkJoinPool(2));
+    assertEquals(new DiskUsage(23, 3, 2), usage);
+    assertEquals(2, breakdown.size());
+    assertEquals(usage, breakdown.get(a));
+    assertEquals(new DiskUsage(3, 2, 1), breakdown.get(b));
+
+    try {
+      FileTreeUtils.diskUsage(base.resolve("missing"));
+      fail();
+    } catch (NoSuchFileException ignored) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void diskUsageWithUnreadableDirectory() throws IOException {
+    Path locked = base.resolve("locked");
+    Files.createDirectories(locked);
+    write(locked.resolve("1"), 10);
+    write(base.resolve("2"), 20);
+
+    assertTrue(locked.toFile().setReadable(false));
+    try {
+      if (locked.toFile().list() != null) {
+        // Running as a user who can read anything.
+        return;
+      }
+      DiskUsage usage = FileTreeUtils.diskUsage(base);
+      assertEquals(new DiskUsage(20, 1, 2), usage);
+      assertFalse(usage.isComplete());
+      assertEquals(1, usage.failures().size());
+    } finally {
+      locked.toFile().setReadable(true);
+    }
+  }
+
+  private static void write(Path path, int size) throws IOException {
+    try (OutputStream out = Files.newOutputStream(path)) {
+      out.write(new byte[size]);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+import org.lukhnos.nnio.file.StandardOpenOption;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the metadata cache under Files.
+ */
+public class MetadataCacheTest extends TestBase {
+  Path base;
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    base = Paths.get(tempDir.getAbsolutePath());
+    MetadataCache.enable(100, 60000);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    MetadataCache.disable();
+    super.tearDown();
+  }
+
+  @Test
+  public void hitsAndMisses() throws IOException {
+    Path test = base.resolve("test");
+    assertFalse(Files.exists(test));
+    assertFalse(Files.exists(test));
+    assertEquals(1, MetadataCache.missCount());
+    assertEquals(1, MetadataCache.hitCount());
+
+    // Changes made through java.io.File are not seen until invalidated.
+    assertTrue(test.toFile().createNewFile());
+    assertFalse(Files.exists(test));
+    MetadataCache.invalidate(test);
+    assertTrue(Files.exists(test));
+    assertTrue(Files.isRegularFile(test));
+    assertEquals(0, Files.size(test));
+  }
+
+  @Test
+  public void invalidation() throws IOException {
+    Path test1 = base.resolve("test1");
+    Path test2 = base.resolve("test2");
+    assertFalse(Files.exists(test1));
+    Files.createFile(test1);
+    assertTrue(Files.exists(test1));
+
+    Files.copy(new ByteArrayInputStream(new byte[10]), test2);
+    assertEquals(10, Files.size(test2));
+    Files.delete(test2);
+    assertFalse(Files.exists(test2));
+
+    Files.move(test1, test2);
+    assertFalse(Files.exists(test1));
+    assertTrue(Files.exists(test2));
+
+    Path dir = base.resolve("a").resolve("b");
+    assertFalse(Files.isDirectory(dir));
+    Files.createDirectories(dir);
+    assertTrue(Files.isDirectory(dir));
+  }
+
+  @Test
+  public void unnormalizedPaths() throws IOException {
+    Path test = base.resolve("test");
+    Files.createDirectories(base.resolve("d"));
+    Files.createFile(test);
+    assertTrue(Files.exists(test));
+    Files.delete(base.resolve("d").resolve("..").resolve("test"));
+    assertFalse(Files.exists(test));
+    assertFalse(Files.exists(base.resolve(".").resolve("test")));
+  }
+
+  @Test
+  public void invalidationOnClose() throws IOException {
+    Path test = base.resolve("test");
+    try (OutputStream out = Files.newOutputStream(test)) {
+      out.write(new byte[10]);
+      out.flush();
+      assertEquals(10, Files.size(test));
+      out.write(new byte[5]);
+    }
+    assertEquals(15, Files.size(test));
+
+    try (SeekableByteChannel ch = Files.newByteChannel(test, StandardOpenOption.APPEND)) {
+      ch.write(ByteBuffer.wrap(new byte[10]));
+      assertEquals(25, Files.size(test));
+      ch.write(ByteBuffer.wrap(new byte[5]));
+    }
+    assertEquals(30, Files.size(test));
+  }
+}
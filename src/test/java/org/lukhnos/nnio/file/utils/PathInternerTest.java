@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for PathInterner.
+ */
+public class PathInternerTest extends TestBase {
+  @Test
+  public void intern() {
+    PathInterner interner = new PathInterner();
+    Path plain = Paths.get(tempDir.getAbsolutePath(), "foo", "bar");
+    Path interned = interner.intern(plain);
+    assertEquals(plain.toString(), interned.toString());
+    assertEquals(plain.toFile(), interned.toFile());
+    assertEquals(plain, interned);
+    assertEquals(interned, plain);
+    assertEquals(plain.hashCode(), interned.hashCode());
+    assertSame(interned, interner.intern(Paths.get(tempDir.getAbsolutePath(), "foo", "bar")));
+    assertSame(interned, interner.get(tempDir.getAbsolutePath()).resolve("foo").resolve("bar"));
+    assertSame(interned.getParent(), interner.intern(plain.getParent()));
+    assertEquals(plain.getRoot(), interned.getRoot());
+    assertEquals(plain.getNameCount(), interned.getNameCount());
+    assertEquals(Paths.get("bar"), interned.getFileName());
+
+    Set<Path> set = new HashSet<>();
+    set.add(plain);
+    assertTrue(set.contains(interned));
+
+    Path relative = interner.get("a", "b");
+    assertEquals("a" + File.separator + "b", relative.toString());
+    assertEquals(null, relative.getRoot());
+    assertEquals(Paths.get("a", "c"), relative.resolveSibling("c"));
+  }
+
+  @Test
+  public void sharesPrefixes() {
+    PathInterner interner = new PathInterner();
+    Path dir = interner.get("root", "dir");
+    for (int i = 0; i < 100; i++) {
+      dir.resolve("file" + i);
+    }
+    assertEquals(102, interner.size());
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016-2017 Lukhnos Liu. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lukhnos.nnio.file.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lukhnos.nnio.TestBase;
+import org.lukhnos.nnio.file.Files;
+import org.lukhnos.nnio.file.Path;
+import org.lukhnos.nnio.file.Paths;
+import org.lukhnos.nnio.file.attribute.FileTime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for TreeIndex.
+ */
+public class TreeIndexTest extends TestBase {
+  Path base;
+  Path root;
+
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    base = Paths.get(tempDir.getAbsolutePath());
+    root = base.resolve("root");
+    Files.createDirectories(root.resolve("a").resolve("b"));
+    Files.createDirectories(root.resolve("a-c"));
+    write(root.resolve("a").resolve("1"), 1);
+    write(root.resolve("a").resolve("b").resolve("2"), 2);
+    write(root.resolve("a-c").resolve("3"), 3);
+  }
+
+  @Test
+  public void saveAndLoad() throws IOException {
+    TreeIndex index = TreeIndex.build(root);
+    assertEquals(7, index.entryCount());
+
+    Path indexFile = base.resolve("index");
+    index.save(indexFile);
+    TreeIndex loaded = TreeIndex.load(indexFile);
+    assertEquals(root, loaded.getRoot());
+    assertEquals(7, loaded.entryCount());
+    assertTrue(loaded.rescan(false).isEmpty());
+  }
+
+  @Test
+  public void rescan() throws IOException {
+    Path indexFile = base.resolve("index");
+    TreeIndex.build(root).save(indexFile);
+
+    Path modified = root.resolve("a").resolve("b").resolve("2");
+    write(modified, 20);
+    Files.createDirectories(root.resolve("a-c").resolve("new"));
+    Path added = root.resolve("a-c").resolve("new").resolve("4");
+    write(added, 4);
+    FileTreeUtils.deleteRecursively(root.resolve("a").resolve("1"));
+
+    TreeIndex.Changes changes = TreeIndex.load(indexFile).rescan(false);
+    assertEquals(Collections.singletonList(modified), changes.modified());
+    assertEquals(new HashSet<>(Arrays.asList(root.resolve("a-c").resolve("new"), added)),
+        new HashSet<>(changes.added()));
+    assertEquals(Collections.singletonList(root.resolve("a").resolve("1")), changes.removed());
+    assertTrue(changes.index().rescan(false).isEmpty());
+
+    FileTreeUtils.deleteRecursively(root.resolve("a"));
+    changes = changes.index().rescan(true);
+    assertEquals(3, changes.removed().size());
+    assertEquals(5, changes.index().entryCount());
+  }
+
+  @Test
+  public void rescanTrustingDirectoryTimes() throws IOException {
+    TreeIndex index = TreeIndex.build(root);
+    Path file = root.resolve("a-c").resolve("3");
+    Path dir = file.getParent();
+    FileTime dirTime = Files.getLastModifiedTime(dir);
+    write(file, 30);
+
+    // A file changed in place is found unless directory times are trusted.
+    assertEquals(Collections.singletonList(file), index.rescan(false).modified());
+    assertEquals(dirTime, Files.getLastModifiedTime(dir));
+    assertTrue(index.rescan(true).isEmpty());
+  }
+
+  private static void write(Path path, int size) throws IOException {
+    try (OutputStream out = Files.newOutputStream(path)) {
+      out.write(new byte[size]);
+    }
+  }
+}